@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.scriptingbundle.plugin.processor.BenchmarkContent;
+import org.apache.sling.scriptingbundle.plugin.processor.Constants;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTree;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTreeSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the analysis of a generated tree with {@link Capabilities#fromFileSystemTree(FileTree, java.util.stream.Stream,
+ * org.apache.sling.scriptingbundle.plugin.processor.Logger, java.util.Set, java.util.Map, boolean, boolean)}, which ends with
+ * matching the collected requirements against the provided capabilities, as well as the serialisation of the resulting
+ * capabilities into the {@code Provide-Capability} and {@code Require-Capability} headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapabilitiesBenchmark {
+
+    @Param({"100", "1000"})
+    public int components;
+
+    private Path root;
+    private FileTreeSnapshot fileTree;
+    private Capabilities capabilities;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("capabilities");
+        BenchmarkContent.createComponents(root, components);
+        fileTree = FileTreeSnapshot.of(root);
+        capabilities = fromFileSystemTree();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Benchmark
+    public Capabilities fromFileSystemTree() {
+        return Capabilities.fromFileSystemTree(
+                fileTree,
+                fileTree.walk(root),
+                BenchmarkContent.NO_OP_LOGGER,
+                Constants.DEFAULT_SEARCH_PATHS,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                true,
+                false);
+    }
+
+    @Benchmark
+    public String getProvidedCapabilitiesString() {
+        return capabilities.getProvidedCapabilitiesString();
+    }
+
+    @Benchmark
+    public String getRequiredCapabilitiesString() {
+        return capabilities.getRequiredCapabilitiesString();
+    }
+}
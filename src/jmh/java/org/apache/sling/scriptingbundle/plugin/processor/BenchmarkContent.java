@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generates the script trees analysed by the benchmarks. Each component of a generated tree is a resource type folder with a main
+ * script, selector and method scripts, a selector folder, a versioned sub-folder, {@code extends} and {@code requires} files and a
+ * client library, so that every step of the analysis is exercised. The {@code extends} and {@code requires} files point mostly to
+ * other generated components, but also to a few resource types which the tree does not provide.
+ */
+public final class BenchmarkContent {
+
+    /**
+     * A {@link Logger} which discards all the messages, so that logging does not skew the measurements.
+     */
+    public static final Logger NO_OP_LOGGER = new Logger() {
+        @Override
+        public void error(@NotNull String message) {}
+
+        @Override
+        public void error(@NotNull String message, @NotNull Throwable t) {}
+
+        @Override
+        public void info(@NotNull String message) {}
+
+        @Override
+        public void warn(@NotNull String message) {}
+
+        @Override
+        public void warn(@NotNull String message, @NotNull Throwable t) {}
+
+        @Override
+        public void debug(@NotNull String message) {}
+    };
+
+    /**
+     * The content of a {@code .content.xml} file defining both a resource super type and required resource types.
+     */
+    public static final String CONTENT_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<jcr:root xmlns:sling=\"http://sling.apache.org/jcr/sling/1.0\"\n"
+            + "    xmlns:jcr=\"http://www.jcp.org/jcr/1.0\"\n"
+            + "    jcr:primaryType=\"sling:Folder\"\n"
+            + "    jcr:title=\"Teaser\"\n"
+            + "    sling:resourceSuperType=\"org/example/components/base\"\n"
+            + "    sling:requiredResourceTypes=\"[org/example/components/image,org/example/components/text]\"/>\n";
+
+    private static final int EXTERNAL_RESOURCE_TYPES = 10;
+
+    private BenchmarkContent() {}
+
+    /**
+     * Creates a tree of {@code components} resource type folders below {@code org/example/components}.
+     *
+     * @param root       the root of the tree
+     * @param components the number of components
+     * @throws IOException if the tree cannot be written
+     */
+    public static void createComponents(@NotNull Path root, int components) throws IOException {
+        for (int i = 0; i < components; i++) {
+            String name = "component" + i;
+            Path component = root.resolve("org/example/components").resolve(name);
+            write(component.resolve(name + ".html"), "<div>${properties.title}</div>");
+            write(component.resolve("edit.html"), "<div>edit</div>");
+            write(component.resolve("json.GET.html"), "{}");
+            write(component.resolve("POST.jsp"), "<% %>");
+            write(component.resolve("teaser/image.html"), "<img>");
+            write(component.resolve("teaser/text/small.html"), "<p>");
+            write(component.resolve("1.0.0").resolve(name + ".html"), "<div>1.0.0</div>");
+            write(
+                    component.resolve(Constants.EXTENDS_FILE),
+                    i == 0 ? "org/external/base" : "org/example/components/component" + (i - 1));
+            write(
+                    component.resolve(Constants.REQUIRES_FILE),
+                    "org/example/components/component" + ((i + 1) % components) + "\norg/external/type"
+                            + (i % EXTERNAL_RESOURCE_TYPES) + ";resolution:=optional");
+            write(component.resolve("clientlib/js.txt"), "script.js");
+            write(component.resolve("clientlib/script.js"), "(function () {})();");
+            write(component.resolve("clientlib/styles.less"), "div {}");
+            write(component.resolve("icon.png"), "");
+        }
+    }
+
+    private static void write(@NotNull Path file, @NotNull String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.api.resource.type.ResourceType;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapabilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FileProcessor#processScriptFile(Path, Path, ResourceType, ProvidedResourceTypeCapabilities, boolean)} on all the
+ * files of a generated tree which are handed to it by a {@link ResourceTypeFolderAnalyser}, including the scripts found in selector
+ * folders. The processor is shared by all the operations, like it is shared by all the folders of an analysis run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileProcessorBenchmark {
+
+    @Param({"100", "1000"})
+    public int components;
+
+    private Path root;
+    private FileProcessor fileProcessor;
+    private final List<Path> resourceTypeDirectories = new ArrayList<>();
+    private final List<ResourceType> resourceTypes = new ArrayList<>();
+    private final List<List<Path>> scripts = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("file-processor");
+        BenchmarkContent.createComponents(root, components);
+        FileTree fileTree = FileTreeSnapshot.of(root);
+        fileProcessor = new FileProcessor(
+                BenchmarkContent.NO_OP_LOGGER,
+                Constants.DEFAULT_SEARCH_PATHS,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
+        for (Path component : fileTree.getChildren(root.resolve("org/example/components"))) {
+            resourceTypeDirectories.add(component);
+            resourceTypes.add(ResourceType.parseResourceType(
+                    root.relativize(component).toString().replace('\\', '/')));
+            List<Path> componentScripts = new ArrayList<>();
+            for (Path file : fileTree.getChildren(component)) {
+                String fileName = String.valueOf(file.getFileName());
+                if (fileTree.isRegularFile(file)
+                        && !Constants.EXTENDS_FILE.equals(fileName)
+                        && !Constants.REQUIRES_FILE.equals(fileName)) {
+                    componentScripts.add(file);
+                }
+            }
+            componentScripts.add(component.resolve("teaser/image.html"));
+            componentScripts.add(component.resolve("teaser/text/small.html"));
+            scripts.add(componentScripts);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Benchmark
+    public ProvidedResourceTypeCapabilities processScriptFile() {
+        ProvidedResourceTypeCapabilities providedCapabilities = new ProvidedResourceTypeCapabilities();
+        for (int i = 0; i < resourceTypeDirectories.size(); i++) {
+            Path resourceTypeDirectory = resourceTypeDirectories.get(i);
+            ResourceType resourceType = resourceTypes.get(i);
+            for (Path script : scripts.get(i)) {
+                fileProcessor.processScriptFile(
+                        resourceTypeDirectory, script, resourceType, providedCapabilities, false);
+            }
+        }
+        return providedCapabilities;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.osgi.framework.Version;
+
+/**
+ * Measures the classification of all the folders of a generated tree by a {@link ResourceTypeFolderPredicate}. A new predicate is
+ * used for each operation, since the verdicts are memoised for the duration of an analysis run. The version segment detection,
+ * which runs for every folder, is additionally compared with the previous {@link Version#parseVersion(String)} based check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceTypeFolderPredicateBenchmark {
+
+    @Param({"100", "1000"})
+    public int components;
+
+    private Path root;
+    private FileTree fileTree;
+    private List<Path> folders;
+    private List<String> segments;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("resource-type-folder-predicate");
+        BenchmarkContent.createComponents(root, components);
+        fileTree = FileTreeSnapshot.of(root);
+        folders = fileTree.walk(root).filter(fileTree::isDirectory).collect(Collectors.toList());
+        segments = folders.stream()
+                .map(Path::getFileName)
+                .filter(fileName -> fileName != null)
+                .map(Path::toString)
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Benchmark
+    public void test(Blackhole blackhole) {
+        ResourceTypeFolderPredicate predicate = new ResourceTypeFolderPredicate(
+                BenchmarkContent.NO_OP_LOGGER,
+                fileTree,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                new VaultContentXmlCache(),
+                false);
+        for (Path folder : folders) {
+            blackhole.consume(predicate.test(folder));
+        }
+    }
+
+    @Benchmark
+    public void isVersion(Blackhole blackhole) {
+        for (String segment : segments) {
+            blackhole.consume(ResourceTypeNames.isVersion(segment));
+        }
+    }
+
+    @Benchmark
+    public void parseVersionBaseline(Blackhole blackhole) {
+        for (String segment : segments) {
+            boolean version;
+            try {
+                Version.parseVersion(segment);
+                version = true;
+            } catch (IllegalArgumentException e) {
+                version = false;
+            }
+            blackhole.consume(version);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link Script#parseScript(String, java.util.Map)} with the previous {@code String.split} based parser, on file names
+ * typically found in a content package's {@code jcr_root}: scripts, but mostly client libraries, images and metadata files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+    private static final String[] FILE_NAMES = {
+        "image.html",
+        "GET.jsp",
+        "html.html",
+        "image.json.GET.html",
+        "image.POST.jsp",
+        "selector.html",
+        "teaser.txt.html",
+        "logo.png",
+        "icon.svg",
+        "thumbnail.48.48.png",
+        "clientlib.min.js",
+        "styles.less",
+        "site.css",
+        "js.txt",
+        "css.txt",
+        ".content.xml",
+        "_cq_dialog",
+        "_cq_editConfig.xml",
+        "README.md",
+        "config.json",
+        "i18n.en.json",
+        "font.woff2",
+        "extends",
+        "requires"
+    };
+
+    @Benchmark
+    public void parseScript(Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(Script.parseScript(fileName, Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING));
+        }
+    }
+
+    @Benchmark
+    public void parseScriptWithoutEngineMappings(Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(Script.parseScript(fileName));
+        }
+    }
+
+    @Benchmark
+    public void splitBaseline(Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(splitParseScript(fileName));
+        }
+    }
+
+    /**
+     * The parser previously used by {@link Script}, kept as a baseline.
+     */
+    private static Object[] splitParseScript(String fileName) {
+        String[] parts = fileName.split("\\.");
+        if (parts.length < 2 || parts.length > 4) {
+            return null;
+        }
+        String name = parts[0];
+        String scriptExtension = parts[parts.length - 1];
+        String requestExtension = null;
+        String requestMethod = null;
+        if (parts.length == 2) {
+            if (Constants.METHODS.contains(name)) {
+                requestMethod = name;
+                name = null;
+            } else if (name.equalsIgnoreCase("html")) {
+                requestExtension = name;
+                name = null;
+            }
+        }
+        if (parts.length == 3) {
+            String middle = parts[1];
+            if (Constants.METHODS.contains(middle)) {
+                requestMethod = middle;
+            } else {
+                requestExtension = middle;
+            }
+        }
+        if (parts.length == 4) {
+            requestExtension = parts[1];
+            requestMethod = parts[2];
+        }
+        return new Object[] {name, requestExtension, requestMethod, scriptExtension};
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor.filevault;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.scriptingbundle.plugin.processor.BenchmarkContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing a {@code .content.xml} file with a {@link VaultContentXmlReader}, compared with retrieving the already parsed
+ * file from a {@link VaultContentXmlCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VaultContentXmlReaderBenchmark {
+
+    private Path directory;
+    private Path contentXml;
+    private VaultContentXmlCache cache;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("vault-content-xml-reader");
+        contentXml = directory.resolve(org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML);
+        Files.write(contentXml, BenchmarkContent.CONTENT_XML.getBytes(StandardCharsets.UTF_8));
+        cache = new VaultContentXmlCache();
+        cache.get(contentXml);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Benchmark
+    public VaultContentXmlReader read() throws IOException {
+        return new VaultContentXmlReader(contentXml);
+    }
+
+    @Benchmark
+    public VaultContentXmlReader readCached() throws IOException {
+        return cache.get(contentXml);
+    }
+}
@@ -19,19 +19,24 @@
 package org.apache.sling.scriptingbundle.plugin.bnd;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -41,8 +46,15 @@ import aQute.bnd.service.Plugin;
 import aQute.service.reporter.Reporter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.processor.AnalysableFilePredicate;
 import org.apache.sling.scriptingbundle.plugin.processor.Constants;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTreeSnapshot;
 import org.apache.sling.scriptingbundle.plugin.processor.Logger;
+import org.apache.sling.scriptingbundle.plugin.processor.OverlayFileTree;
+import org.apache.sling.scriptingbundle.plugin.workdir.AnalysisCache;
+import org.apache.sling.scriptingbundle.plugin.workdir.InputFingerprint;
+import org.apache.sling.scriptingbundle.plugin.workdir.WorkDirectorySynchronizer;
+import org.jetbrains.annotations.NotNull;
 
 public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
 
@@ -51,6 +63,8 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
     static final String PROJECT_ROOT_FOLDER = "project.dir";
 
     private Map<String, String> pluginProperties;
+    private CompiledGlobMatcher includes;
+    private CompiledGlobMatcher excludes;
     private Reporter reporter;
     private Logger logger;
 
@@ -62,9 +76,9 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
         logger = new BndLogger(reporter);
         boolean inContentPackage = "content-package".equals(analyzer.get("project.packaging"));
         Path workDirectory = Paths.get(analyzer.get(PROJECT_BUILD_FOLDER), "scriptingbundle-maven-plugin");
-        Files.createDirectories(workDirectory);
-        Set<PathMatcher> includes = getConfiguredIncludes();
-        Set<PathMatcher> excludes = getConfiguredExcludes();
+        scriptEngineMappings = getConfiguredScriptEngineMappings();
+        AnalysableFilePredicate analysableFile = new AnalysableFilePredicate(scriptEngineMappings, inContentPackage);
+        Map<Path, Path> sourceFiles = new LinkedHashMap<>();
         getConfiguredSourceDirectories().stream()
                 .map(sourceDirectory -> {
                     Path sourceDirectoryPath = Paths.get(sourceDirectory);
@@ -76,58 +90,87 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
                 .filter(sourceDirectoryPath ->
                         Files.exists(sourceDirectoryPath) && Files.isDirectory(sourceDirectoryPath))
                 .forEach(sourceDirectoryPath -> {
-                    try (Stream<Path> includedFiles = walkPath(sourceDirectoryPath, includes, excludes)) {
-                        includedFiles.forEach(file -> {
-                            try {
-                                if (!Files.isDirectory(file)) {
-                                    Path workingCopy = Paths.get(
-                                            workDirectory.toString(),
-                                            sourceDirectoryPath.relativize(file).toString());
-                                    Path parent = workingCopy.getParent();
-                                    if (parent != null) {
-                                        Files.createDirectories(parent);
-                                    }
-                                    Files.copy(file, workingCopy, StandardCopyOption.REPLACE_EXISTING);
-                                }
-                            } catch (IOException e) {
-                                logger.error("Cannot copy file into working directory.", e);
-                            }
-                        });
+                    try (Stream<Path> includedFiles = walkPath(sourceDirectoryPath, false)) {
+                        includedFiles
+                                .filter(analysableFile)
+                                .forEach(file -> sourceFiles.putIfAbsent(sourceDirectoryPath.relativize(file), file));
                     } catch (IOException e) {
                         logger.error("Cannot analyse source folders.", e);
                     }
                 });
-        scriptEngineMappings = getConfiguredScriptEngineMappings();
 
-        try (Stream<Path> files = walkPath(workDirectory, includes, excludes)) {
-            capabilities = Capabilities.fromFileSystemTree(
-                    workDirectory,
-                    files,
-                    logger,
-                    getConfiguredSearchPaths(),
-                    scriptEngineMappings,
-                    getMissingRequirementsOptional(),
-                    inContentPackage);
+        AnalysisCache cache = null;
+        String fingerprint = null;
+        capabilities = null;
+        if (getAnalysisCache()) {
+            cache = new AnalysisCache(Paths.get(workDirectory + ".capabilities"), logger);
+            fingerprint = new InputFingerprint()
+                    .addProperty(Constants.BND_INCLUDES, pluginProperties.get(Constants.BND_INCLUDES))
+                    .addProperty(Constants.BND_EXCLUDES, pluginProperties.get(Constants.BND_EXCLUDES))
+                    .addProperty(Constants.BND_SEARCH_PATHS, new TreeSet<>(getConfiguredSearchPaths()))
+                    .addProperty(Constants.BND_SCRIPT_ENGINE_MAPPINGS, new TreeMap<>(scriptEngineMappings))
+                    .addProperty(Constants.BND_MISSING_REQUIREMENTS_OPTIONAL, getMissingRequirementsOptional())
+                    .addProperty("inContentPackage", inContentPackage)
+                    .addProperty(Constants.BND_IN_PLACE_ANALYSIS, getInPlaceAnalysis())
+                    .addFiles(sourceFiles)
+                    .toString();
+            capabilities = cache.read(fingerprint);
         }
-
-        String providedCapabilitiesDefinition = capabilities.getProvidedCapabilitiesString();
-        String requiredCapabilitiesDefinition = capabilities.getRequiredCapabilitiesString();
-
-        String providedCapabilities = analyzer.get(aQute.bnd.osgi.Constants.PROVIDE_CAPABILITY);
-        if (StringUtils.isNotEmpty(providedCapabilities)) {
-            providedCapabilities += ", " + providedCapabilitiesDefinition;
-        } else {
-            providedCapabilities = providedCapabilitiesDefinition;
+        if (capabilities == null) {
+            if (getInPlaceAnalysis()) {
+                OverlayFileTree.Builder overlayBuilder = OverlayFileTree.builder(workDirectory);
+                sourceFiles.forEach(overlayBuilder::add);
+                Set<Path> files = new LinkedHashSet<>();
+                sourceFiles.keySet().stream().map(workDirectory::resolve).forEach(file -> {
+                    files.add(file);
+                    files.add(file.getParent());
+                });
+                capabilities = Capabilities.fromFileSystemTree(
+                        overlayBuilder.build(),
+                        files.stream(),
+                        logger,
+                        getConfiguredSearchPaths(),
+                        scriptEngineMappings,
+                        getMissingRequirementsOptional(),
+                        inContentPackage,
+                        getConfiguredParallelism(Constants.BND_ANALYSIS_PARALLELISM, "analysis parallelism", 1),
+                        getConfiguredParallelism(Constants.BND_PREFETCH_CONCURRENCY, "prefetch concurrency", 0),
+                        null);
+            } else {
+                WorkDirectorySynchronizer.Result result = new WorkDirectorySynchronizer(
+                                workDirectory,
+                                logger,
+                                getConfiguredParallelism(Constants.BND_COPY_PARALLELISM, "copy parallelism", 0))
+                        .synchronize(sourceFiles);
+                if (!result.getFailures().isEmpty()) {
+                    // the files which could not be copied are not analysed, so the capabilities must not be cached
+                    cache = null;
+                }
+                try (Stream<Path> files = walkPath(workDirectory, true)) {
+                    capabilities = Capabilities.fromFileSystemTree(
+                            FileTreeSnapshot.of(workDirectory),
+                            files,
+                            logger,
+                            getConfiguredSearchPaths(),
+                            scriptEngineMappings,
+                            getMissingRequirementsOptional(),
+                            inContentPackage,
+                            getConfiguredParallelism(Constants.BND_ANALYSIS_PARALLELISM, "analysis parallelism", 1),
+                            getConfiguredParallelism(Constants.BND_PREFETCH_CONCURRENCY, "prefetch concurrency", 0),
+                            null);
+                }
+            }
+            if (cache != null) {
+                cache.write(fingerprint, capabilities);
+            }
         }
-        analyzer.set(aQute.bnd.osgi.Constants.PROVIDE_CAPABILITY, providedCapabilities);
 
-        String requiredCapabilities = analyzer.get(aQute.bnd.osgi.Constants.REQUIRE_CAPABILITY);
-        if (StringUtils.isNotEmpty(requiredCapabilities)) {
-            requiredCapabilities += ", " + requiredCapabilitiesDefinition;
-        } else {
-            requiredCapabilities = requiredCapabilitiesDefinition;
-        }
-        analyzer.set(aQute.bnd.osgi.Constants.REQUIRE_CAPABILITY, requiredCapabilities);
+        analyzer.set(
+                aQute.bnd.osgi.Constants.PROVIDE_CAPABILITY,
+                capabilities.getProvidedCapabilitiesString(analyzer.get(aQute.bnd.osgi.Constants.PROVIDE_CAPABILITY)));
+        analyzer.set(
+                aQute.bnd.osgi.Constants.REQUIRE_CAPABILITY,
+                capabilities.getRequiredCapabilitiesString(analyzer.get(aQute.bnd.osgi.Constants.REQUIRE_CAPABILITY)));
 
         Integer serviceRanking = getConfiguredServiceRanking();
         if (serviceRanking != null) {
@@ -139,6 +182,8 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
     @Override
     public void setProperties(Map<String, String> pluginProperties) {
         this.pluginProperties = pluginProperties;
+        this.includes = null;
+        this.excludes = null;
     }
 
     @Override
@@ -157,35 +202,38 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
     private Set<String> getConfiguredSourceDirectories() {
         String sourceDirectoriesCSV = pluginProperties.get(Constants.BND_SOURCE_DIRECTORIES);
         if (StringUtils.isNotEmpty(sourceDirectoriesCSV)) {
-            return Collections.unmodifiableSet(Arrays.stream(sourceDirectoriesCSV.split(","))
+            Set<String> sourceDirectories = Arrays.stream(sourceDirectoriesCSV.split(","))
                     .map(String::trim)
-                    .collect(Collectors.toSet()));
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            return Collections.unmodifiableSet(sourceDirectories);
         }
         return Constants.DEFAULT_SOURCE_DIRECTORIES;
     }
 
-    private Set<PathMatcher> getConfiguredExcludes() {
-        String excludesCSV = pluginProperties.get(Constants.BND_EXCLUDES);
-        if (StringUtils.isNotEmpty(excludesCSV)) {
-            return Collections.unmodifiableSet(Arrays.stream(excludesCSV.split(","))
-                    .map(String::trim)
-                    .map(pattern -> FileSystems.getDefault().getPathMatcher(GLOB + pattern))
-                    .collect(Collectors.toSet()));
+    private CompiledGlobMatcher getConfiguredExcludes() {
+        if (excludes == null) {
+            String excludesCSV = pluginProperties.get(Constants.BND_EXCLUDES);
+            if (StringUtils.isNotEmpty(excludesCSV)) {
+                excludes = CompiledGlobMatcher.compile(
+                        Arrays.stream(excludesCSV.split(",")).map(String::trim).collect(Collectors.toList()));
+            } else {
+                excludes = CompiledGlobMatcher.compile(Constants.DEFAULT_EXCLUDES);
+            }
         }
-        return Collections.unmodifiableSet(Constants.DEFAULT_EXCLUDES.stream()
-                .map(pattern -> FileSystems.getDefault().getPathMatcher(GLOB + pattern))
-                .collect(Collectors.toSet()));
+        return excludes;
     }
 
-    private Set<PathMatcher> getConfiguredIncludes() {
-        String includesCSV = pluginProperties.get(Constants.BND_INCLUDES);
-        if (StringUtils.isNotEmpty(includesCSV)) {
-            return Collections.unmodifiableSet(Arrays.stream(includesCSV.split(","))
-                    .map(String::trim)
-                    .map(pattern -> FileSystems.getDefault().getPathMatcher(GLOB + pattern))
-                    .collect(Collectors.toSet()));
+    private CompiledGlobMatcher getConfiguredIncludes() {
+        if (includes == null) {
+            String includesCSV = pluginProperties.get(Constants.BND_INCLUDES);
+            if (StringUtils.isNotEmpty(includesCSV)) {
+                includes = CompiledGlobMatcher.compile(
+                        Arrays.stream(includesCSV.split(",")).map(String::trim).collect(Collectors.toList()));
+            } else {
+                includes = CompiledGlobMatcher.compile(Collections.emptyList());
+            }
         }
-        return Collections.emptySet();
+        return includes;
     }
 
     private Map<String, String> getConfiguredScriptEngineMappings() {
@@ -227,6 +275,30 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
         return true;
     }
 
+    private boolean getAnalysisCache() {
+        String analysisCacheString = pluginProperties.get(Constants.BND_ANALYSIS_CACHE);
+        return analysisCacheString == null
+                || !"false".equals(analysisCacheString.trim().toLowerCase());
+    }
+
+    private boolean getInPlaceAnalysis() {
+        String inPlaceAnalysisString = pluginProperties.get(Constants.BND_IN_PLACE_ANALYSIS);
+        return inPlaceAnalysisString != null
+                && "true".equals(inPlaceAnalysisString.trim().toLowerCase());
+    }
+
+    private int getConfiguredParallelism(@NotNull String property, @NotNull String description, int defaultValue) {
+        String parallelismString = pluginProperties.get(property);
+        if (StringUtils.isNotEmpty(parallelismString)) {
+            try {
+                return Integer.parseInt(parallelismString.trim());
+            } catch (NumberFormatException e) {
+                logger.error(String.format("Invalid %s: %s.", description, parallelismString));
+            }
+        }
+        return defaultValue;
+    }
+
     private Integer getConfiguredServiceRanking() {
         String serviceRankingString = pluginProperties.get(Constants.BND_SERVICE_RANKING);
         if (StringUtils.isNotEmpty(serviceRankingString)) {
@@ -239,29 +311,55 @@ public class BundledScriptsScannerPlugin implements AnalyzerPlugin, Plugin {
         return null;
     }
 
-    private Stream<Path> walkPath(Path path, Set<PathMatcher> includes, Set<PathMatcher> excludes) throws IOException {
-        return Files.walk(path)
-                .filter(file -> {
-                    boolean include = includes.isEmpty();
-                    Optional<PathMatcher> includeOptions = includes.stream()
-                            .filter(pathMatcher -> pathMatcher.matches(file))
-                            .findFirst();
-                    if (includeOptions.isPresent()) {
-                        include = true;
-                    }
-                    Optional<PathMatcher> excludeOptions = excludes.stream()
-                            .filter(pathMatcher -> pathMatcher.matches(file))
-                            .findFirst();
-                    if (excludeOptions.isPresent()) {
-                        include = false;
+    /**
+     * Walks the tree rooted at {@code path} and returns the included files and, optionally, folders in post-order: the content of
+     * a folder is always listed before the folder itself. A folder is listed once, either because it is included itself or because
+     * it contains included files. Folders whose whole subtree is excluded are not traversed.
+     */
+    private Stream<Path> walkPath(Path path, boolean includeFolders) throws IOException {
+        CompiledGlobMatcher includeMatcher = getConfiguredIncludes();
+        CompiledGlobMatcher excludeMatcher = getConfiguredExcludes();
+        List<Path> paths = new ArrayList<>();
+        Set<Path> parentFolders = new HashSet<>();
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(path) && excludeMatcher.matchesSubtree(dir)) {
+                    if (includeFolders && isIncluded(dir, includeMatcher, excludeMatcher)) {
+                        paths.add(dir);
                     }
-                    return include;
-                })
-                .flatMap(file -> {
-                    if (!Files.isDirectory(file)) {
-                        return Stream.of(file, file.getParent());
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                boolean folder = attrs.isDirectory() || (attrs.isSymbolicLink() && Files.isDirectory(file));
+                if (isIncluded(file, includeMatcher, excludeMatcher) && (includeFolders || !folder)) {
+                    paths.add(file);
+                    if (!folder) {
+                        parentFolders.add(file.getParent());
                     }
-                    return Stream.of(file);
-                });
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                if (includeFolders && (parentFolders.remove(dir) || isIncluded(dir, includeMatcher, excludeMatcher))) {
+                    paths.add(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return paths.stream();
+    }
+
+    private static boolean isIncluded(Path path, CompiledGlobMatcher includes, CompiledGlobMatcher excludes) {
+        return (includes.isEmpty() || includes.matches(path)) && !excludes.matches(path);
     }
 }
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.bnd;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Matches paths against a set of glob patterns, using the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}. All
+ * the patterns are translated to regular expressions and merged into a single {@link Pattern}, so that a path is matched once,
+ * instead of once per configured glob.
+ * <p>
+ * Patterns of the form {@code prefix/**} match every path below a folder matched by {@code prefix}; these prefixes are compiled
+ * into a second pattern, which allows a file tree walker to skip such folders altogether.
+ */
+final class CompiledGlobMatcher {
+
+    private static final String REGEX_META_CHARACTERS = ".^$+|(){}[]\\";
+    private static final String SUBTREE_SUFFIX = "/**";
+
+    private final boolean empty;
+    private final Pattern pattern;
+    private final Pattern subtreePattern;
+
+    private CompiledGlobMatcher(boolean empty, @Nullable Pattern pattern, @Nullable Pattern subtreePattern) {
+        this.empty = empty;
+        this.pattern = pattern;
+        this.subtreePattern = subtreePattern;
+    }
+
+    /**
+     * Compiles the given glob patterns.
+     *
+     * @param globs the glob patterns, without the {@code glob:} syntax prefix
+     * @return the compiled matcher
+     * @throws IllegalArgumentException if one of the patterns is invalid
+     */
+    @NotNull
+    static CompiledGlobMatcher compile(@NotNull Collection<String> globs) {
+        if (globs.isEmpty()) {
+            return new CompiledGlobMatcher(true, null, null);
+        }
+        List<String> regexes = new ArrayList<>(globs.size());
+        List<String> subtreeRegexes = new ArrayList<>();
+        for (String glob : globs) {
+            regexes.add(toRegex(glob));
+            if (glob.endsWith(SUBTREE_SUFFIX) && !glob.endsWith("\\" + SUBTREE_SUFFIX)) {
+                subtreeRegexes.add(toRegex(glob.substring(0, glob.length() - SUBTREE_SUFFIX.length())));
+            }
+        }
+        return new CompiledGlobMatcher(false, merge(regexes), subtreeRegexes.isEmpty() ? null : merge(subtreeRegexes));
+    }
+
+    /**
+     * Checks if this matcher was compiled from an empty set of patterns.
+     *
+     * @return {@code true} if there are no patterns, {@code false} otherwise
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Checks if the path is matched by any of the patterns.
+     *
+     * @param path the path
+     * @return {@code true} if at least one pattern matches the path, {@code false} otherwise
+     */
+    boolean matches(@NotNull Path path) {
+        return pattern != null && pattern.matcher(toString(path)).matches();
+    }
+
+    /**
+     * Checks if all the paths below the given folder are matched by one of the {@code prefix/**} patterns.
+     *
+     * @param folder the folder
+     * @return {@code true} if every path inside {@code folder} is matched, {@code false} otherwise
+     */
+    boolean matchesSubtree(@NotNull Path folder) {
+        return subtreePattern != null
+                && subtreePattern.matcher(toString(folder)).matches();
+    }
+
+    @NotNull
+    private static Pattern merge(@NotNull List<String> regexes) {
+        StringBuilder merged = new StringBuilder();
+        for (String regex : regexes) {
+            if (merged.length() > 0) {
+                merged.append('|');
+            }
+            merged.append("(?:").append(regex).append(')');
+        }
+        return Pattern.compile(merged.toString());
+    }
+
+    @NotNull
+    private static String toString(@NotNull Path path) {
+        return FilenameUtils.separatorsToUnix(path.toString());
+    }
+
+    @NotNull
+    private static String toRegex(@NotNull String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == glob.length()) {
+                        throw new IllegalArgumentException(String.format("No character to escape in glob %s.", glob));
+                    }
+                    appendLiteral(regex, glob.charAt(i++));
+                    break;
+                case '/':
+                    regex.append('/');
+                    break;
+                case '[':
+                    i = appendBracketExpression(glob, i, regex);
+                    break;
+                case '{':
+                    if (inGroup) {
+                        throw new IllegalArgumentException(String.format("Cannot nest groups in glob %s.", glob));
+                    }
+                    regex.append("(?:(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        regex.append("))");
+                        inGroup = false;
+                    } else {
+                        regex.append('}');
+                    }
+                    break;
+                case ',':
+                    if (inGroup) {
+                        regex.append(")|(?:");
+                    } else {
+                        regex.append(',');
+                    }
+                    break;
+                case '*':
+                    if (i < glob.length() && glob.charAt(i) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                default:
+                    appendLiteral(regex, c);
+            }
+        }
+        if (inGroup) {
+            throw new IllegalArgumentException(String.format("Missing '}' in glob %s.", glob));
+        }
+        return regex.toString();
+    }
+
+    private static int appendBracketExpression(@NotNull String glob, int start, @NotNull StringBuilder regex) {
+        int i = start;
+        regex.append("[[^/]&&[");
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            regex.append('^');
+            i++;
+        }
+        boolean first = true;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            if (c == ']' && !first) {
+                regex.append("]]");
+                return i;
+            }
+            if (c == '/') {
+                throw new IllegalArgumentException(
+                        String.format("Explicit 'name separator' in class in glob %s.", glob));
+            }
+            if (c == '\\' || c == '[' || c == '&' || c == '^' || c == ']') {
+                regex.append('\\');
+            }
+            regex.append(c);
+            first = false;
+        }
+        throw new IllegalArgumentException(String.format("Missing ']' in glob %s.", glob));
+    }
+
+    private static void appendLiteral(@NotNull StringBuilder regex, char c) {
+        if (REGEX_META_CHARACTERS.indexOf(c) != -1) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+}
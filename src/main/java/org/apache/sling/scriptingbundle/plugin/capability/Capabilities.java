@@ -18,24 +18,33 @@
  */
 package org.apache.sling.scriptingbundle.plugin.capability;
 
-import java.nio.file.Files;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import aQute.bnd.header.Attrs;
-import aQute.bnd.header.Parameters;
+import aQute.bnd.header.OSGiHeader;
 import org.apache.sling.api.servlets.ServletResolverConstants;
 import org.apache.sling.scriptingbundle.plugin.processor.Constants;
 import org.apache.sling.scriptingbundle.plugin.processor.FileProcessor;
+import org.apache.sling.scriptingbundle.plugin.processor.FileSystemTree;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTree;
 import org.apache.sling.scriptingbundle.plugin.processor.Logger;
 import org.apache.sling.scriptingbundle.plugin.processor.PathOnlyScriptAnalyser;
+import org.apache.sling.scriptingbundle.plugin.processor.PrefetchedContent;
 import org.apache.sling.scriptingbundle.plugin.processor.ResourceTypeFolderAnalyser;
+import org.apache.sling.scriptingbundle.plugin.processor.ResourceTypeFolderPredicate;
+import org.apache.sling.scriptingbundle.plugin.processor.ResourceTypeNames;
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Version;
 import org.osgi.framework.VersionRange;
 
 public class Capabilities {
@@ -43,6 +52,8 @@ public class Capabilities {
     private final Set<ProvidedResourceTypeCapability> providedResourceTypeCapabilities;
     private final Set<ProvidedScriptCapability> providedScriptCapabilities;
     private final Set<RequiredResourceTypeCapability> requiredResourceTypeCapabilities;
+    private static final int ESTIMATED_PROVIDED_CLAUSE_LENGTH = 192;
+    private static final int ESTIMATED_REQUIRED_CLAUSE_LENGTH = 160;
     public static final Capabilities EMPTY =
             new Capabilities(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
 
@@ -68,75 +79,131 @@ public class Capabilities {
     }
 
     public @NotNull String getProvidedCapabilitiesString() {
-        Parameters parameters = new Parameters();
-        for (ProvidedResourceTypeCapability capability : getProvidedResourceTypeCapabilities()) {
-            Attrs attributes = new Attrs();
-            attributes.putTyped(Constants.CAPABILITY_RESOURCE_TYPE_AT, capability.getResourceTypes());
-            Optional.ofNullable(capability.getScriptEngine())
-                    .ifPresent(scriptEngine -> attributes.put(Constants.CAPABILITY_SCRIPT_ENGINE_AT, scriptEngine));
-            Optional.ofNullable(capability.getScriptExtension())
-                    .ifPresent(scriptExtension ->
-                            attributes.put(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, scriptExtension));
-            Optional.ofNullable(capability.getVersion())
-                    .ifPresent(version -> attributes.putTyped(
-                            Constants.CAPABILITY_VERSION_AT, new aQute.bnd.version.Version(version.toString())));
-            Optional.ofNullable(capability.getExtendsResourceType())
-                    .ifPresent(extendedResourceType ->
-                            attributes.put(Constants.CAPABILITY_EXTENDS_AT, extendedResourceType));
-            Optional.ofNullable(capability.getRequestMethod())
-                    .ifPresent(method -> attributes.put(Constants.CAPABILITY_METHODS_AT, method));
-            Optional.ofNullable(capability.getRequestExtension())
-                    .ifPresent(
-                            requestExtension -> attributes.put(Constants.CAPABILITY_EXTENSIONS_AT, requestExtension));
+        return getProvidedCapabilitiesString(null);
+    }
+
+    /**
+     * Returns the {@code Provide-Capability} header value, appending the provided capabilities to the clauses of an existing value.
+     *
+     * @param existingHeader the existing header value, if any
+     * @return the header value
+     */
+    public @NotNull String getProvidedCapabilitiesString(@Nullable String existingHeader) {
+        StringBuilder header = newHeader(
+                existingHeader,
+                (providedResourceTypeCapabilities.size() + providedScriptCapabilities.size())
+                        * ESTIMATED_PROVIDED_CLAUSE_LENGTH);
+        try {
+            writeProvidedCapabilities(new HeaderWriter(header).clauses(OSGiHeader.parseHeader(existingHeader)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return header.toString();
+    }
+
+    /**
+     * Writes the {@code Provide-Capability} header clauses for the provided capabilities.
+     *
+     * @param header the header to append the clauses to
+     * @throws IOException if the header cannot be written
+     */
+    public void appendProvidedCapabilities(@NotNull Appendable header) throws IOException {
+        writeProvidedCapabilities(new HeaderWriter(header));
+    }
+
+    private void writeProvidedCapabilities(@NotNull HeaderWriter writer) throws IOException {
+        for (ProvidedResourceTypeCapability capability : providedResourceTypeCapabilities) {
+            writer.clause(Constants.CAPABILITY_NS)
+                    .listAttribute(Constants.CAPABILITY_RESOURCE_TYPE_AT, capability.getResourceTypes());
+            String scriptEngine = capability.getScriptEngine();
+            if (scriptEngine != null) {
+                writer.attribute(Constants.CAPABILITY_SCRIPT_ENGINE_AT, scriptEngine);
+            }
+            String scriptExtension = capability.getScriptExtension();
+            if (scriptExtension != null) {
+                writer.attribute(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, scriptExtension);
+            }
+            Version version = capability.getVersion();
+            if (version != null) {
+                writer.versionAttribute(Constants.CAPABILITY_VERSION_AT, version.toString());
+            }
+            String extendsResourceType = capability.getExtendsResourceType();
+            if (extendsResourceType != null) {
+                writer.attribute(Constants.CAPABILITY_EXTENDS_AT, extendsResourceType);
+            }
+            String requestMethod = capability.getRequestMethod();
+            if (requestMethod != null) {
+                writer.attribute(Constants.CAPABILITY_METHODS_AT, requestMethod);
+            }
+            String requestExtension = capability.getRequestExtension();
+            if (requestExtension != null) {
+                writer.attribute(Constants.CAPABILITY_EXTENSIONS_AT, requestExtension);
+            }
             if (!capability.getSelectors().isEmpty()) {
-                attributes.putTyped(Constants.CAPABILITY_SELECTORS_AT, capability.getSelectors());
+                writer.listAttribute(Constants.CAPABILITY_SELECTORS_AT, capability.getSelectors());
             }
-            parameters.add(Constants.CAPABILITY_NS, attributes);
         }
-
-        for (ProvidedScriptCapability scriptCapability : getProvidedScriptCapabilities()) {
-            Attrs attributes = new Attrs();
-            attributes.put(Constants.CAPABILITY_PATH_AT, scriptCapability.getPath());
-            attributes.put(Constants.CAPABILITY_SCRIPT_ENGINE_AT, scriptCapability.getScriptEngine());
-            attributes.put(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, scriptCapability.getScriptExtension());
-            parameters.add(Constants.CAPABILITY_NS, attributes);
+        for (ProvidedScriptCapability scriptCapability : providedScriptCapabilities) {
+            writer.clause(Constants.CAPABILITY_NS)
+                    .attribute(Constants.CAPABILITY_PATH_AT, scriptCapability.getPath())
+                    .attribute(Constants.CAPABILITY_SCRIPT_ENGINE_AT, scriptCapability.getScriptEngine())
+                    .attribute(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, scriptCapability.getScriptExtension());
         }
-        return parameters.toString();
     }
 
     public @NotNull String getRequiredCapabilitiesString() {
-        Parameters parameters = new Parameters();
-        for (RequiredResourceTypeCapability capability : getRequiredResourceTypeCapabilities()) {
-            Attrs attributes = new Attrs();
+        return getRequiredCapabilitiesString(null);
+    }
+
+    /**
+     * Returns the {@code Require-Capability} header value, appending the required capabilities to the clauses of an existing value.
+     *
+     * @param existingHeader the existing header value, if any
+     * @return the header value
+     */
+    public @NotNull String getRequiredCapabilitiesString(@Nullable String existingHeader) {
+        StringBuilder header =
+                newHeader(existingHeader, requiredResourceTypeCapabilities.size() * ESTIMATED_REQUIRED_CLAUSE_LENGTH);
+        try {
+            writeRequiredCapabilities(new HeaderWriter(header).clauses(OSGiHeader.parseHeader(existingHeader)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return header.toString();
+    }
 
-            StringBuilder filterValue =
-                    new StringBuilder("(&(!(" + ServletResolverConstants.SLING_SERVLET_SELECTORS + "=*))");
+    /**
+     * Writes the {@code Require-Capability} header clauses for the required capabilities.
+     *
+     * @param header the header to append the clauses to
+     * @throws IOException if the header cannot be written
+     */
+    public void appendRequiredCapabilities(@NotNull Appendable header) throws IOException {
+        writeRequiredCapabilities(new HeaderWriter(header));
+    }
+
+    private void writeRequiredCapabilities(@NotNull HeaderWriter writer) throws IOException {
+        for (RequiredResourceTypeCapability capability : requiredResourceTypeCapabilities) {
+            writer.clause(Constants.CAPABILITY_NS)
+                    .startQuotedDirective(aQute.bnd.osgi.Constants.FILTER_DIRECTIVE)
+                    .value("(&(!(" + ServletResolverConstants.SLING_SERVLET_SELECTORS + "=*))");
             VersionRange versionRange = capability.getVersionRange();
             if (versionRange != null) {
-                filterValue
-                        .append("(&")
-                        .append(versionRange.toFilterString("version"))
-                        .append("(")
-                        .append(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES)
-                        .append("=")
-                        .append(capability.getResourceType())
-                        .append(")))");
-            } else {
-                filterValue
-                        .append("(")
-                        .append(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES)
-                        .append("=")
-                        .append(capability.getResourceType())
-                        .append("))");
+                writer.value("(&").value(versionRange.toFilterString("version"));
             }
-
-            attributes.put(aQute.bnd.osgi.Constants.FILTER_DIRECTIVE, filterValue.toString());
+            writer.value("(" + ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=")
+                    .value(capability.getResourceType())
+                    .value(versionRange != null ? ")))" : "))")
+                    .endQuotedDirective();
             if (capability.isOptional()) {
-                attributes.put(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE, aQute.bnd.osgi.Constants.OPTIONAL);
+                writer.directive(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE, aQute.bnd.osgi.Constants.OPTIONAL);
             }
-            parameters.add(Constants.CAPABILITY_NS, attributes);
         }
-        return parameters.toString();
+    }
+
+    @NotNull
+    private static StringBuilder newHeader(@Nullable String existingHeader, int estimatedLength) {
+        return new StringBuilder((existingHeader == null ? 0 : existingHeader.length() + 1) + estimatedLength);
     }
 
     public static @NotNull Capabilities fromFileSystemTree(
@@ -147,35 +214,125 @@ public class Capabilities {
             @NotNull Map<String, String> scriptEngineMappings,
             boolean missingRequirementsOptional,
             boolean inContentPackage) {
+        return fromFileSystemTree(
+                new FileSystemTree(root),
+                files,
+                logger,
+                searchPaths,
+                scriptEngineMappings,
+                missingRequirementsOptional,
+                inContentPackage);
+    }
+
+    public static @NotNull Capabilities fromFileSystemTree(
+            @NotNull FileTree fileTree,
+            @NotNull Stream<Path> files,
+            @NotNull Logger logger,
+            @NotNull Set<String> searchPaths,
+            @NotNull Map<String, String> scriptEngineMappings,
+            boolean missingRequirementsOptional,
+            boolean inContentPackage) {
+        return fromFileSystemTree(
+                fileTree,
+                files,
+                logger,
+                searchPaths,
+                scriptEngineMappings,
+                missingRequirementsOptional,
+                inContentPackage,
+                1,
+                0,
+                null);
+    }
+
+    /**
+     * Analyses the given files and folders, reusing the capabilities which were computed for them by a previous run. The
+     * capabilities of a folder depend only on the content of its subtree, whereas the capabilities of a file depend on the files
+     * found in each of its ancestor folders; the caller is responsible for removing the entries affected by a change before calling
+     * this method.
+     * <p>
+     * The paths can be analysed by several threads; the result does not depend on the {@code parallelism}, since the capabilities
+     * are always merged in the order of the {@code files} stream. On file systems with a high latency, the metadata of the paths can
+     * additionally be read ahead on virtual threads, see {@link PrefetchedContent}.
+     *
+     * @param fileTree                    the analysed tree
+     * @param files                       the files and folders to analyse
+     * @param logger                      the logger
+     * @param searchPaths                 the search paths
+     * @param scriptEngineMappings        the script engine mappings
+     * @param missingRequirementsOptional whether requirements which are not provided by the analysed tree are optional
+     * @param inContentPackage            whether the tree is serialised in the FileVault format
+     * @param parallelism                 the maximum number of paths analysed at the same time; values lower than {@code 1}
+     *                                    select the number of available processors
+     * @param prefetchConcurrency         the maximum number of concurrent reads issued to prefetch the metadata of the analysed
+     *                                    paths; values lower than {@code 1} disable prefetching
+     * @param pathCapabilities            the capabilities of each analysed path, which will be completed with the paths that were
+     *                                    not analysed before; {@code null} if no capabilities should be reused
+     * @return the capabilities
+     */
+    public static @NotNull Capabilities fromFileSystemTree(
+            @NotNull FileTree fileTree,
+            @NotNull Stream<Path> files,
+            @NotNull Logger logger,
+            @NotNull Set<String> searchPaths,
+            @NotNull Map<String, String> scriptEngineMappings,
+            boolean missingRequirementsOptional,
+            boolean inContentPackage,
+            int parallelism,
+            int prefetchConcurrency,
+            @Nullable Map<Path, Capabilities> pathCapabilities) {
         Set<ProvidedResourceTypeCapability> providedResourceTypeCapabilities = new LinkedHashSet<>();
         Set<ProvidedScriptCapability> providedScriptCapabilities = new LinkedHashSet<>();
         Set<RequiredResourceTypeCapability> requiredResourceTypeCapabilities = new LinkedHashSet<>();
-        FileProcessor fileProcessor = new FileProcessor(logger, searchPaths, scriptEngineMappings);
-        ResourceTypeFolderAnalyser resourceTypeFolderAnalyser =
-                new ResourceTypeFolderAnalyser(logger, root, fileProcessor, inContentPackage);
-        PathOnlyScriptAnalyser pathOnlyScriptAnalyser =
-                new PathOnlyScriptAnalyser(logger, root, scriptEngineMappings, fileProcessor, inContentPackage);
-        files.forEach(path -> {
-            if (Files.isDirectory(path)) {
-                Capabilities resourceTypeCapabilities = resourceTypeFolderAnalyser.getCapabilities(path);
-                providedResourceTypeCapabilities.addAll(resourceTypeCapabilities.getProvidedResourceTypeCapabilities());
-                requiredResourceTypeCapabilities.addAll(resourceTypeCapabilities.getRequiredResourceTypeCapabilities());
-            } else {
-                Capabilities pathCapabilities = pathOnlyScriptAnalyser.getProvidedScriptCapability(path);
-                providedScriptCapabilities.addAll(pathCapabilities.getProvidedScriptCapabilities());
-                requiredResourceTypeCapabilities.addAll(pathCapabilities.getRequiredResourceTypeCapabilities());
+        VaultContentXmlCache vaultContentXmlCache = new VaultContentXmlCache();
+        List<Path> paths = files.collect(Collectors.toList());
+        PrefetchedContent prefetchedContent = PrefetchedContent.prefetch(
+                fileTree,
+                pathCapabilities == null
+                        ? paths
+                        : paths.stream()
+                                .filter(path -> !pathCapabilities.containsKey(path))
+                                .collect(Collectors.toList()),
+                vaultContentXmlCache,
+                logger,
+                prefetchConcurrency);
+        FileTree analysedTree = prefetchedContent.wrap(fileTree);
+        ResourceTypeNames resourceTypeNames = new ResourceTypeNames();
+        FileProcessor fileProcessor = new FileProcessor(
+                logger, searchPaths, scriptEngineMappings, vaultContentXmlCache, prefetchedContent, resourceTypeNames);
+        ResourceTypeFolderPredicate resourceTypeFolderPredicate = new ResourceTypeFolderPredicate(
+                logger, analysedTree, scriptEngineMappings, vaultContentXmlCache, inContentPackage, resourceTypeNames);
+        ResourceTypeFolderAnalyser resourceTypeFolderAnalyser = new ResourceTypeFolderAnalyser(
+                logger, analysedTree, resourceTypeFolderPredicate, fileProcessor, inContentPackage, resourceTypeNames);
+        PathOnlyScriptAnalyser pathOnlyScriptAnalyser = new PathOnlyScriptAnalyser(
+                analysedTree, scriptEngineMappings, resourceTypeFolderPredicate, fileProcessor, inContentPackage);
+        Capabilities[] results = ParallelPathAnalysis.analyse(
+                paths,
+                path -> {
+                    Capabilities capabilities = pathCapabilities == null ? null : pathCapabilities.get(path);
+                    if (capabilities != null) {
+                        return capabilities;
+                    }
+                    return analysedTree.isDirectory(path)
+                            ? resourceTypeFolderAnalyser.getCapabilities(path)
+                            : pathOnlyScriptAnalyser.getProvidedScriptCapability(path);
+                },
+                parallelism);
+        for (int i = 0; i < results.length; i++) {
+            Capabilities capabilities = results[i];
+            providedResourceTypeCapabilities.addAll(capabilities.getProvidedResourceTypeCapabilities());
+            providedScriptCapabilities.addAll(capabilities.getProvidedScriptCapabilities());
+            requiredResourceTypeCapabilities.addAll(capabilities.getRequiredResourceTypeCapabilities());
+            if (pathCapabilities != null) {
+                pathCapabilities.put(paths.get(i), capabilities);
             }
-        });
+        }
         final Set<RequiredResourceTypeCapability> required = new LinkedHashSet<>();
         if (missingRequirementsOptional) {
-            Set<RequiredResourceTypeCapability> unresolvedRequiredResourceTypeCapabilities =
-                    new LinkedHashSet<>(requiredResourceTypeCapabilities);
-            providedResourceTypeCapabilities.forEach(providedResourceTypeCapability ->
-                    unresolvedRequiredResourceTypeCapabilities.removeIf(requiredResourceTypeCapability ->
-                            requiredResourceTypeCapability.isSatisfied(providedResourceTypeCapability)));
-
+            ResourceTypeVersionIndex providedResourceTypes =
+                    new ResourceTypeVersionIndex(providedResourceTypeCapabilities);
             requiredResourceTypeCapabilities.forEach(requiredResourceTypeCapability -> {
-                if (unresolvedRequiredResourceTypeCapabilities.contains(requiredResourceTypeCapability)) {
+                if (!providedResourceTypes.isSatisfied(requiredResourceTypeCapability)) {
                     required.add(RequiredResourceTypeCapability.builder()
                             .withResourceType(requiredResourceTypeCapability.getResourceType())
                             .withVersionRange(requiredResourceTypeCapability.getVersionRange())
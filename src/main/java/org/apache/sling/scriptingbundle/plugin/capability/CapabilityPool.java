@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Canonicalises the strings, resource type sets and selector lists referenced by the capabilities built during one analysis run.
+ * Scripts of the same resource type share the same resource types and often the same selectors, so pooling them means that every
+ * capability of a resource type references a single, immutable copy instead of retaining its own. Instances are thread-safe and
+ * are meant to be dropped together with the run's capabilities.
+ * <p>
+ * A resource type set is only shared with sets which have the same elements in the same iteration order, since that order is
+ * reflected in the generated {@code Provide-Capability} header.
+ */
+public final class CapabilityPool {
+
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final Map<Set<String>, Set<String>> resourceTypeSets = new ConcurrentHashMap<>();
+    private final Map<List<String>, List<String>> selectorLists = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the canonical instance of the given string.
+     *
+     * @param string the string
+     * @return the canonical instance
+     */
+    @NotNull
+    public String intern(@NotNull String string) {
+        String canonical = strings.putIfAbsent(string, string);
+        return canonical == null ? string : canonical;
+    }
+
+    @Nullable
+    String internNullable(@Nullable String string) {
+        return string == null ? null : intern(string);
+    }
+
+    @NotNull
+    Set<String> resourceTypes(@NotNull Set<String> resourceTypes) {
+        Set<String> canonical = resourceTypeSets.get(resourceTypes);
+        if (canonical == resourceTypes || (canonical != null && sameOrder(canonical, resourceTypes))) {
+            return canonical;
+        }
+        Set<String> copy = new LinkedHashSet<>();
+        for (String resourceType : resourceTypes) {
+            copy.add(intern(resourceType));
+        }
+        copy = Collections.unmodifiableSet(copy);
+        if (canonical == null) {
+            canonical = resourceTypeSets.putIfAbsent(copy, copy);
+            if (canonical != null && sameOrder(canonical, copy)) {
+                return canonical;
+            }
+        }
+        return copy;
+    }
+
+    @NotNull
+    List<String> selectors(@NotNull List<String> selectors) {
+        if (selectors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> canonical = selectorLists.get(selectors);
+        if (canonical != null) {
+            return canonical;
+        }
+        List<String> copy = new ArrayList<>(selectors.size());
+        for (String selector : selectors) {
+            copy.add(intern(selector));
+        }
+        copy = Collections.unmodifiableList(copy);
+        canonical = selectorLists.putIfAbsent(copy, copy);
+        return canonical == null ? copy : canonical;
+    }
+
+    /**
+     * Returns an immutable copy of the resource types, for capabilities which are built without a pool.
+     */
+    @NotNull
+    static Set<String> copyOf(@NotNull Set<String> resourceTypes) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(resourceTypes));
+    }
+
+    /**
+     * Returns an immutable copy of the selectors, for capabilities which are built without a pool.
+     */
+    @NotNull
+    static List<String> copyOf(@NotNull List<String> selectors) {
+        return selectors.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(selectors));
+    }
+
+    private static boolean sameOrder(@NotNull Set<String> first, @NotNull Set<String> second) {
+        Iterator<String> secondIterator = second.iterator();
+        for (String element : first) {
+            if (!secondIterator.hasNext() || !element.equals(secondIterator.next())) {
+                return false;
+            }
+        }
+        return !secondIterator.hasNext();
+    }
+}
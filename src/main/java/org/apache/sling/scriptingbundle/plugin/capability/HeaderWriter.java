@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.header.Parameters;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the clauses of a manifest header directly to an {@link Appendable}, producing the same output as rendering a bnd
+ * {@link aQute.bnd.header.Parameters} object whose clauses were added with {@link aQute.bnd.header.Parameters#add} and whose
+ * attributes were set with {@link aQute.bnd.header.Attrs#put} and {@link aQute.bnd.header.Attrs#putTyped}, without building
+ * these intermediate objects.
+ */
+final class HeaderWriter {
+
+    private static final String TYPE_LIST_OF_STRINGS = "List<String>";
+    private static final String TYPE_VERSION = "Version";
+
+    private final Appendable header;
+    private final StringBuilder listBuffer = new StringBuilder();
+    private boolean firstClause = true;
+
+    HeaderWriter(@NotNull Appendable header) {
+        this.header = header;
+    }
+
+    /**
+     * Starts a new clause.
+     *
+     * @param name the clause's name (e.g. the capability namespace)
+     * @return this writer
+     * @throws IOException if the header cannot be written
+     */
+    @NotNull
+    HeaderWriter clause(@NotNull String name) throws IOException {
+        if (!firstClause) {
+            header.append(',');
+        }
+        header.append(name);
+        firstClause = false;
+        return this;
+    }
+
+    /**
+     * Writes the clauses of a parsed header, such as the existing value of a header to which capabilities are added, the same way
+     * {@link Parameters#toString()} renders them.
+     *
+     * @param clauses the parsed clauses
+     * @return this writer
+     * @throws IOException if the header cannot be written
+     */
+    @NotNull
+    HeaderWriter clauses(@NotNull Parameters clauses) throws IOException {
+        for (Map.Entry<String, Attrs> clause : clauses.entrySet()) {
+            // bnd marks the repeated clause names with trailing ~ characters
+            clause(StringUtils.stripEnd(clause.getKey(), "~"));
+            Attrs attributes = clause.getValue();
+            for (String name : attributes.keySet()) {
+                Attrs.Type type = attributes.getType(name);
+                header.append(';').append(name);
+                if (type != Attrs.Type.STRING) {
+                    header.append(':').append(type.toString());
+                }
+                header.append('=');
+                OSGiHeader.quote(header, attributes.get(name));
+            }
+        }
+        return this;
+    }
+
+    @NotNull
+    HeaderWriter attribute(@NotNull String name, @NotNull String value) throws IOException {
+        header.append(';').append(name).append('=');
+        OSGiHeader.quote(header, value);
+        return this;
+    }
+
+    @NotNull
+    HeaderWriter versionAttribute(@NotNull String name, @NotNull String version) throws IOException {
+        header.append(';').append(name).append(':').append(TYPE_VERSION).append('=');
+        OSGiHeader.quote(header, version);
+        return this;
+    }
+
+    /**
+     * Writes a {@code List<String>} attribute, escaping the {@code ,} and {@code \} characters of the values.
+     */
+    @NotNull
+    HeaderWriter listAttribute(@NotNull String name, @NotNull Collection<String> values) throws IOException {
+        listBuffer.setLength(0);
+        for (String value : values) {
+            if (listBuffer.length() > 0) {
+                listBuffer.append(',');
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '\\') {
+                    listBuffer.append('\\');
+                }
+                listBuffer.append(c);
+            }
+        }
+        header.append(';').append(name).append(':').append(TYPE_LIST_OF_STRINGS).append('=');
+        OSGiHeader.quote(header, listBuffer.toString());
+        return this;
+    }
+
+    /**
+     * Writes a directive. Like with {@link aQute.bnd.header.Attrs}, the directive's name has to end with {@code :} (e.g.
+     * {@link aQute.bnd.osgi.Constants#RESOLUTION_DIRECTIVE}).
+     */
+    @NotNull
+    HeaderWriter directive(@NotNull String name, @NotNull String value) throws IOException {
+        header.append(';').append(name).append('=');
+        OSGiHeader.quote(header, value);
+        return this;
+    }
+
+    /**
+     * Starts a directive whose value is always quoted, such as an LDAP filter. The value is written in parts with {@link #value}
+     * and completed with {@link #endQuotedDirective()}. This must only be used for values which would be quoted anyway, i.e. values
+     * which contain characters other than letters, digits, {@code _} and {@code -} and which don't start or end with {@code "}.
+     */
+    @NotNull
+    HeaderWriter startQuotedDirective(@NotNull String name) throws IOException {
+        header.append(';').append(name).append("=\"");
+        return this;
+    }
+
+    /**
+     * Writes a part of a quoted value. Unlike {@link OSGiHeader#quote}, which only escapes {@code "}, this also escapes the
+     * {@code \} character, as required by the {@code quoted-string} production of the OSGi common header syntax; otherwise the
+     * escapes of an LDAP filter would be read as header escapes, and a value ending with {@code \} would escape the closing quote.
+     */
+    @NotNull
+    HeaderWriter value(@NotNull String part) throws IOException {
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '"' || c == '\\') {
+                header.append('\\');
+            }
+            header.append(c);
+        }
+        return this;
+    }
+
+    @NotNull
+    HeaderWriter endQuotedDirective() throws IOException {
+        header.append('"');
+        return this;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Analyses a list of files and folders on a {@link ForkJoinPool}. The list is split in halves until each task only covers a few
+ * paths, so that idle workers can steal the pending halves of a worker which is busy with a large resource type folder. Each path's
+ * capabilities are stored at the path's index, which allows merging them in the order of the list, exactly like a sequential
+ * analysis would. The first failure stops the tasks which did not start yet and is rethrown to the caller.
+ */
+final class ParallelPathAnalysis {
+
+    private static final int PATHS_PER_TASK = 4;
+
+    private ParallelPathAnalysis() {}
+
+    /**
+     * Analyses the given paths.
+     *
+     * @param paths       the paths
+     * @param analyser    the function computing the capabilities of a path; it has to be thread-safe
+     * @param parallelism the maximum number of paths analysed at the same time; values lower than {@code 1} select the number of
+     *                    available processors
+     * @return the capabilities of each path, at the path's index
+     */
+    @NotNull
+    static Capabilities[] analyse(
+            @NotNull List<Path> paths, @NotNull Function<Path, Capabilities> analyser, int parallelism) {
+        Capabilities[] results = new Capabilities[paths.size()];
+        int threads = parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        if (threads == 1 || paths.size() <= PATHS_PER_TASK) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = analyser.apply(paths.get(i));
+            }
+            return results;
+        }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(
+                Math.min(threads, (paths.size() + PATHS_PER_TASK - 1) / PATHS_PER_TASK),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread thread =
+                            ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                    thread.setName("scriptingbundle-analysis-" + thread.getPoolIndex());
+                    thread.setContextClassLoader(contextClassLoader);
+                    return thread;
+                },
+                null,
+                false);
+        Analysis analysis = new Analysis(paths, analyser, results);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> analysis.analyse(0, paths.size())));
+        } catch (RuntimeException | Error e) {
+            // the pool may rethrow a copy of the exception; rethrow the one thrown by the analyser instead
+            Throwable original = analysis.failure.get();
+            if (original instanceof RuntimeException) {
+                throw (RuntimeException) original;
+            }
+            if (original instanceof Error) {
+                throw (Error) original;
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    private static final class Analysis {
+
+        private final List<Path> paths;
+        private final Function<Path, Capabilities> analyser;
+        private final Capabilities[] results;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Analysis(
+                @NotNull List<Path> paths,
+                @NotNull Function<Path, Capabilities> analyser,
+                @NotNull Capabilities[] results) {
+            this.paths = paths;
+            this.analyser = analyser;
+            this.results = results;
+        }
+
+        private void analyse(int from, int to) {
+            if (to - from > PATHS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ForkJoinTask.invokeAll(
+                        ForkJoinTask.adapt(() -> analyse(from, middle)), ForkJoinTask.adapt(() -> analyse(middle, to)));
+                return;
+            }
+            for (int i = from; i < to && failure.get() == null; i++) {
+                try {
+                    results[i] = analyser.apply(paths.get(i));
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An insertion-ordered set of {@link ProvidedResourceTypeCapability} instances, which additionally indexes the capabilities by
+ * their resource types, selectors, request method and request extension. This allows finding the capabilities registered for a
+ * given combination in constant time, instead of scanning all the capabilities of a resource type. Like with a
+ * {@link LinkedHashSet}, removing a capability and adding its replacement moves the replacement to the end of the iteration order.
+ */
+public final class ProvidedResourceTypeCapabilities extends AbstractSet<ProvidedResourceTypeCapability> {
+
+    private final Set<ProvidedResourceTypeCapability> capabilities = new LinkedHashSet<>();
+    private final Map<Key, Set<ProvidedResourceTypeCapability>> index = new HashMap<>();
+
+    /**
+     * Returns the capabilities which have exactly the given resource types, selectors, request method and request extension, in
+     * insertion order. An empty request method or extension is equivalent to a {@code null} one.
+     *
+     * @param resourceTypes    the resource types
+     * @param selectors        the selectors
+     * @param requestMethod    the request method
+     * @param requestExtension the request extension
+     * @return an unmodifiable view of the matching capabilities
+     */
+    @NotNull
+    public Collection<ProvidedResourceTypeCapability> get(
+            @NotNull Set<String> resourceTypes,
+            @NotNull List<String> selectors,
+            @Nullable String requestMethod,
+            @Nullable String requestExtension) {
+        Set<ProvidedResourceTypeCapability> matches =
+                index.get(new Key(resourceTypes, selectors, requestMethod, requestExtension));
+        return matches == null ? Collections.emptySet() : Collections.unmodifiableSet(matches);
+    }
+
+    @Override
+    public boolean add(@NotNull ProvidedResourceTypeCapability capability) {
+        if (capabilities.add(capability)) {
+            index.computeIfAbsent(key(capability), key -> new LinkedHashSet<>()).add(capability);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        if (capabilities.remove(object)) {
+            unindex((ProvidedResourceTypeCapability) object);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return capabilities.contains(object);
+    }
+
+    @Override
+    @NotNull
+    public Iterator<ProvidedResourceTypeCapability> iterator() {
+        Iterator<ProvidedResourceTypeCapability> iterator = capabilities.iterator();
+        return new Iterator<>() {
+            private ProvidedResourceTypeCapability current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ProvidedResourceTypeCapability next() {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                unindex(current);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return capabilities.size();
+    }
+
+    @Override
+    public void clear() {
+        capabilities.clear();
+        index.clear();
+    }
+
+    private void unindex(@NotNull ProvidedResourceTypeCapability capability) {
+        Key key = key(capability);
+        Set<ProvidedResourceTypeCapability> bucket = index.get(key);
+        if (bucket != null) {
+            bucket.remove(capability);
+            if (bucket.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @NotNull
+    private static Key key(@NotNull ProvidedResourceTypeCapability capability) {
+        return new Key(
+                capability.getResourceTypes(),
+                capability.getSelectors(),
+                capability.getRequestMethod(),
+                capability.getRequestExtension());
+    }
+
+    private static final class Key {
+        private final Set<String> resourceTypes;
+        private final List<String> selectors;
+        private final String requestMethod;
+        private final String requestExtension;
+        private final int hashCode;
+
+        private Key(
+                @NotNull Set<String> resourceTypes,
+                @NotNull List<String> selectors,
+                @Nullable String requestMethod,
+                @Nullable String requestExtension) {
+            this.resourceTypes = resourceTypes;
+            this.selectors = selectors;
+            this.requestMethod = StringUtils.defaultIfEmpty(requestMethod, null);
+            this.requestExtension = StringUtils.defaultIfEmpty(requestExtension, null);
+            this.hashCode = Objects.hash(resourceTypes, selectors, this.requestMethod, this.requestExtension);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return hashCode == other.hashCode
+                        && Objects.equals(resourceTypes, other.resourceTypes)
+                        && Objects.equals(selectors, other.selectors)
+                        && Objects.equals(requestMethod, other.requestMethod)
+                        && Objects.equals(requestExtension, other.requestExtension);
+            }
+            return false;
+        }
+    }
+}
@@ -40,6 +40,7 @@ public class ProvidedResourceTypeCapability {
     private final String requestExtension;
     private final String requestMethod;
     private final List<String> selectors;
+    private final int hashCode;
 
     private ProvidedResourceTypeCapability(
             @NotNull Set<String> resourceTypes,
@@ -58,15 +59,36 @@ public class ProvidedResourceTypeCapability {
         this.requestExtension = requestExtension;
         this.requestMethod = requestMethod;
         this.selectors = selectors;
+        // same value as Objects.hash over the fields, without allocating the varargs array
+        int hash = 1;
+        hash = 31 * hash + resourceTypes.hashCode();
+        hash = 31 * hash + Objects.hashCode(scriptEngine);
+        hash = 31 * hash + Objects.hashCode(scriptExtension);
+        hash = 31 * hash + Objects.hashCode(version);
+        hash = 31 * hash + Objects.hashCode(requestExtension);
+        hash = 31 * hash + Objects.hashCode(extendsResourceType);
+        hash = 31 * hash + Objects.hashCode(requestMethod);
+        hash = 31 * hash + selectors.hashCode();
+        this.hashCode = hash;
     }
 
     public static Builder builder() {
-        return new Builder();
+        return new Builder(null);
+    }
+
+    /**
+     * Returns a builder whose capabilities share their strings, resource types and selectors through the given pool.
+     *
+     * @param pool the pool of the current analysis run
+     * @return the builder
+     */
+    public static Builder builder(@NotNull CapabilityPool pool) {
+        return new Builder(pool);
     }
 
     @NotNull
     public Set<String> getResourceTypes() {
-        return Collections.unmodifiableSet(resourceTypes);
+        return resourceTypes;
     }
 
     @Nullable
@@ -101,20 +123,12 @@ public class ProvidedResourceTypeCapability {
 
     @NotNull
     public List<String> getSelectors() {
-        return Collections.unmodifiableList(selectors);
+        return selectors;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(
-                resourceTypes,
-                scriptEngine,
-                scriptExtension,
-                version,
-                requestExtension,
-                extendsResourceType,
-                requestMethod,
-                selectors);
+        return hashCode;
     }
 
     @Override
@@ -124,7 +138,8 @@ public class ProvidedResourceTypeCapability {
         }
         if (obj instanceof ProvidedResourceTypeCapability) {
             ProvidedResourceTypeCapability other = (ProvidedResourceTypeCapability) obj;
-            return Objects.equals(resourceTypes, other.resourceTypes)
+            return hashCode == other.hashCode
+                    && Objects.equals(resourceTypes, other.resourceTypes)
                     && Objects.equals(scriptEngine, other.scriptEngine)
                     && Objects.equals(scriptExtension, other.scriptExtension)
                     && Objects.equals(version, other.version)
@@ -153,7 +168,9 @@ public class ProvidedResourceTypeCapability {
     }
 
     public static class Builder {
+        private final CapabilityPool pool;
         private Set<String> resourceTypes = new HashSet<>();
+        private boolean sharedResourceTypes;
         private String scriptEngine;
         private String scriptExtension;
         private String extendsResourceType;
@@ -162,11 +179,16 @@ public class ProvidedResourceTypeCapability {
         private String requestMethod;
         private List<String> selectors = Collections.emptyList();
 
+        private Builder(@Nullable CapabilityPool pool) {
+            this.pool = pool;
+        }
+
         public Builder withResourceTypes(@NotNull Set<String> resourceTypes) {
             if (resourceTypes.isEmpty()) {
                 throw new IllegalArgumentException("The script's resourceTypes cannot be null or empty.");
             }
             this.resourceTypes = resourceTypes;
+            this.sharedResourceTypes = true;
             return this;
         }
 
@@ -178,6 +200,10 @@ public class ProvidedResourceTypeCapability {
             if (StringUtils.isEmpty(resourceType)) {
                 throw new IllegalArgumentException("The script's resourceType cannot be null or empty.");
             }
+            if (sharedResourceTypes) {
+                resourceTypes = new LinkedHashSet<>(resourceTypes);
+                sharedResourceTypes = false;
+            }
             resourceTypes.add(resourceType);
             return this;
         }
@@ -226,6 +252,7 @@ public class ProvidedResourceTypeCapability {
                 throw new IllegalArgumentException("The script's resourceTypes cannot be null or empty.");
             }
             this.resourceTypes = capability.getResourceTypes();
+            this.sharedResourceTypes = true;
             this.scriptEngine = capability.getScriptEngine();
             this.scriptExtension = capability.getScriptExtension();
             this.extendsResourceType = capability.getExtendsResourceType();
@@ -237,15 +264,26 @@ public class ProvidedResourceTypeCapability {
         }
 
         public ProvidedResourceTypeCapability build() {
+            if (pool == null) {
+                return new ProvidedResourceTypeCapability(
+                        CapabilityPool.copyOf(resourceTypes),
+                        scriptEngine,
+                        scriptExtension,
+                        extendsResourceType,
+                        version,
+                        requestExtension,
+                        requestMethod,
+                        CapabilityPool.copyOf(selectors));
+            }
             return new ProvidedResourceTypeCapability(
-                    resourceTypes,
-                    scriptEngine,
-                    scriptExtension,
-                    extendsResourceType,
+                    pool.resourceTypes(resourceTypes),
+                    pool.internNullable(scriptEngine),
+                    pool.internNullable(scriptExtension),
+                    pool.internNullable(extendsResourceType),
                     version,
-                    requestExtension,
-                    requestMethod,
-                    selectors);
+                    pool.internNullable(requestExtension),
+                    pool.internNullable(requestMethod),
+                    pool.selectors(selectors));
         }
     }
 }
@@ -32,16 +32,30 @@ public class RequiredResourceTypeCapability {
     private final String resourceType;
     private final VersionRange versionRange;
     private final boolean isOptional;
+    private final int hashCode;
 
     private RequiredResourceTypeCapability(
             @NotNull String resourceType, @Nullable VersionRange versionRange, boolean isOptional) {
         this.resourceType = resourceType;
         this.versionRange = versionRange;
         this.isOptional = isOptional;
+        // same value as Objects.hash(resourceType, versionRange, isOptional)
+        this.hashCode = 31 * (31 * (31 + Objects.hashCode(resourceType)) + Objects.hashCode(versionRange))
+                + Boolean.hashCode(isOptional);
     }
 
     public static Builder builder() {
-        return new Builder();
+        return new Builder(null);
+    }
+
+    /**
+     * Returns a builder whose capabilities share their resource type strings through the given pool.
+     *
+     * @param pool the pool of the current analysis run
+     * @return the builder
+     */
+    public static Builder builder(@NotNull CapabilityPool pool) {
+        return new Builder(pool);
     }
 
     @NotNull
@@ -86,7 +100,7 @@ public class RequiredResourceTypeCapability {
 
     @Override
     public int hashCode() {
-        return Objects.hash(resourceType, versionRange, isOptional);
+        return hashCode;
     }
 
     @Override
@@ -96,20 +110,29 @@ public class RequiredResourceTypeCapability {
         }
         if (obj instanceof RequiredResourceTypeCapability) {
             RequiredResourceTypeCapability other = (RequiredResourceTypeCapability) obj;
-            return Objects.equals(resourceType, other.resourceType)
-                    && Objects.equals(versionRange, other.versionRange)
-                    && Objects.equals(isOptional, other.isOptional);
+            return hashCode == other.hashCode
+                    && isOptional == other.isOptional
+                    && Objects.equals(resourceType, other.resourceType)
+                    && Objects.equals(versionRange, other.versionRange);
         }
         return false;
     }
 
     public static class Builder {
+        private final CapabilityPool pool;
         private String resourceType;
         private VersionRange versionRange;
         private boolean isOptional;
 
+        private Builder(@Nullable CapabilityPool pool) {
+            this.pool = pool;
+        }
+
         public RequiredResourceTypeCapability build() {
-            return new RequiredResourceTypeCapability(resourceType, versionRange, isOptional);
+            return new RequiredResourceTypeCapability(
+                    pool == null || resourceType == null ? resourceType : pool.intern(resourceType),
+                    versionRange,
+                    isOptional);
         }
 
         public Builder withResourceType(String resourceType) {
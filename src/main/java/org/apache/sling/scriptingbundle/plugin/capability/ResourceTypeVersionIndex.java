@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+/**
+ * Indexes the resource types provided by a set of {@link ProvidedResourceTypeCapability} instances without selectors, together with
+ * their sorted versions, so that checking if a {@link RequiredResourceTypeCapability} is satisfied takes a hash lookup and a binary
+ * search instead of a scan over all the provided capabilities. The answers are the same as the ones of
+ * {@link RequiredResourceTypeCapability#isSatisfied(ProvidedResourceTypeCapability)}.
+ */
+class ResourceTypeVersionIndex {
+
+    private final Map<String, NavigableSet<Version>> versions = new HashMap<>();
+
+    ResourceTypeVersionIndex(@NotNull Iterable<ProvidedResourceTypeCapability> providedCapabilities) {
+        for (ProvidedResourceTypeCapability capability : providedCapabilities) {
+            if (capability.getSelectors().isEmpty()) {
+                Version version = capability.getVersion();
+                for (String resourceType : capability.getResourceTypes()) {
+                    NavigableSet<Version> resourceTypeVersions =
+                            versions.computeIfAbsent(resourceType, key -> new TreeSet<>());
+                    if (version != null) {
+                        resourceTypeVersions.add(version);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the requirement is satisfied by at least one of the indexed capabilities.
+     *
+     * @param requirement the requirement
+     * @return {@code true} if the requirement is satisfied, {@code false} otherwise
+     */
+    boolean isSatisfied(@NotNull RequiredResourceTypeCapability requirement) {
+        NavigableSet<Version> resourceTypeVersions = versions.get(requirement.getResourceType());
+        if (resourceTypeVersions == null) {
+            return false;
+        }
+        VersionRange versionRange = requirement.getVersionRange();
+        if (versionRange == null) {
+            return true;
+        }
+        // the lowest provided version above the range's left endpoint is the only candidate
+        Version candidate = versionRange.getLeftType() == VersionRange.LEFT_CLOSED
+                ? resourceTypeVersions.ceiling(versionRange.getLeft())
+                : resourceTypeVersions.higher(versionRange.getLeft());
+        return candidate != null && versionRange.includes(candidate);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.maven;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTreeSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The state kept by an incremental build context between two builds of the same project: the capabilities computed by the last
+ * build, together with the capabilities of each analysed file and folder, the analysed source files and the snapshot of the working
+ * directory. When some source files change, only those files are synchronised and only the paths whose capabilities can depend on
+ * them are analysed again.
+ */
+final class IncrementalAnalysis {
+
+    private final String configuration;
+    private final Map<Path, Capabilities> pathCapabilities = new HashMap<>();
+    private final Map<Path, Path> sourceFiles = new LinkedHashMap<>();
+    private Capabilities capabilities;
+    private FileTreeSnapshot snapshot;
+
+    IncrementalAnalysis(@NotNull String configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns the fingerprint of the configuration used by the build which created this state.
+     *
+     * @return the configuration fingerprint
+     */
+    @NotNull
+    String getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Returns the capabilities of each analysed path, which are updated by the analysis.
+     *
+     * @return the mutable map of capabilities
+     */
+    @NotNull
+    Map<Path, Capabilities> getPathCapabilities() {
+        return pathCapabilities;
+    }
+
+    /**
+     * Returns the analysed source files, which are updated with the changes reported by the build context.
+     *
+     * @return a mutable map where the keys are paths relative to the analysed tree and the values are the source files
+     */
+    @NotNull
+    Map<Path, Path> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    /**
+     * Returns the snapshot of the working directory taken by the last build, or {@code null} if the source directories were
+     * analysed in place.
+     *
+     * @return the snapshot of the working directory
+     */
+    @Nullable
+    FileTreeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(@Nullable FileTreeSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Nullable
+    Capabilities getCapabilities() {
+        return capabilities;
+    }
+
+    void setCapabilities(@NotNull Capabilities capabilities) {
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * Forgets the capabilities which can depend on the given path, because the path was created, modified or deleted. These are
+     * the capabilities of the path itself and of its ancestor folders, whose subtree contains the path, as well as the ones of all
+     * the paths below the path's folder, since the path can change whether that folder denotes a resource type.
+     *
+     * @param changedPath the changed path, inside the analysed tree
+     */
+    void invalidate(@NotNull Path changedPath) {
+        Path folder = changedPath.getParent();
+        pathCapabilities
+                .keySet()
+                .removeIf(path -> changedPath.startsWith(path) || (folder != null && path.startsWith(folder)));
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.sling.scriptingbundle.plugin.maven;
 
+import javax.inject.Inject;
 import javax.script.ScriptEngineFactory;
 
 import java.io.File;
@@ -25,16 +26,18 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -42,9 +45,19 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.utils.io.DirectoryScanner;
 import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.processor.AnalysableFilePredicate;
 import org.apache.sling.scriptingbundle.plugin.processor.Constants;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTree;
+import org.apache.sling.scriptingbundle.plugin.processor.FileTreeSnapshot;
 import org.apache.sling.scriptingbundle.plugin.processor.Logger;
+import org.apache.sling.scriptingbundle.plugin.processor.OverlayFileTree;
+import org.apache.sling.scriptingbundle.plugin.workdir.AnalysisCache;
+import org.apache.sling.scriptingbundle.plugin.workdir.InputFingerprint;
+import org.apache.sling.scriptingbundle.plugin.workdir.WorkDirectorySynchronizer;
+import org.codehaus.plexus.util.Scanner;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
  * The {@code metadata} goal will generate two Maven project properties, namely
@@ -55,17 +68,20 @@ import org.jetbrains.annotations.NotNull;
 @Mojo(name = "metadata", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
 public class MetadataMojo extends AbstractMojo {
 
+    private static final String INCREMENTAL_ANALYSIS_KEY = MetadataMojo.class.getName() + ".incrementalAnalysis";
+
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
     /**
      * Defines where this goal will look for scripts in the project. By default the {@code src/main/scripts} and
-     * {@code src/main/resources/javax.script} folders will be considered.
+     * {@code src/main/resources/javax.script} folders will be considered. When the same file path is present in more than one
+     * source directory, the file from the source directory which was defined first is used.
      *
      * @since 0.2.0
      */
     @Parameter(property = "scriptingbundle.sourceDirectories")
-    private Set<String> sourceDirectories;
+    private List<String> sourceDirectories;
 
     /**
      * Allows defining a list of included files and folders or patterns to filter which files should be included in the analysis for
@@ -185,6 +201,58 @@ public class MetadataMojo extends AbstractMojo {
     @Parameter(property = "scriptingbundle.serviceRanking")
     private Integer serviceRanking;
 
+    /**
+     * When set to "true", the source directories are analysed in place, through a merged read-only view, instead of being copied
+     * into the {@code scriptingbundle-maven-plugin} working directory from the project's build directory.
+     *
+     * @since 0.6.0
+     */
+    @Parameter(property = "scriptingbundle.inPlaceAnalysis", defaultValue = "false")
+    private boolean inPlaceAnalysis;
+
+    /**
+     * The maximum number of files which are copied at the same time into the {@code scriptingbundle-maven-plugin} working
+     * directory. Values lower than {@code 1} select the number of available processors. This parameter has no effect when
+     * {@code inPlaceAnalysis} is enabled.
+     *
+     * @since 0.6.0
+     */
+    @Parameter(property = "scriptingbundle.copyParallelism", defaultValue = "0")
+    private int copyParallelism;
+
+    /**
+     * The maximum number of files and folders which are analysed at the same time. The default analyses them sequentially; values
+     * lower than {@code 1} select the number of available processors. The generated capabilities do not depend on this value.
+     *
+     * @since 0.6.0
+     */
+    @Parameter(property = "scriptingbundle.analysisParallelism", defaultValue = "1")
+    private int analysisParallelism;
+
+    /**
+     * The maximum number of concurrent reads issued to prefetch the folder listings, the {@code extends} and {@code requires} files
+     * and the {@code .content.xml} files before analysing them, which hides the latency of slow or networked file systems. The
+     * reads are issued on virtual threads, so prefetching requires Java 21 or newer; on older runtimes the files are read
+     * synchronously. Values lower than {@code 1} disable prefetching.
+     *
+     * @since 0.6.0
+     */
+    @Parameter(property = "scriptingbundle.prefetchConcurrency", defaultValue = "0")
+    private int prefetchConcurrency;
+
+    /**
+     * When set to "true", the computed capabilities are stored next to the {@code scriptingbundle-maven-plugin} working directory,
+     * together with a fingerprint of the analysed files and of the configuration. A later build whose inputs have the same
+     * fingerprint reuses the stored capabilities instead of analysing the source directories again.
+     *
+     * @since 0.6.0
+     */
+    @Parameter(property = "scriptingbundle.analysisCache", defaultValue = "true")
+    private boolean analysisCache = true;
+
+    @Inject
+    private BuildContext buildContext;
+
     private Capabilities capabilities;
 
     public void execute() {
@@ -192,11 +260,18 @@ public class MetadataMojo extends AbstractMojo {
         Logger logger = new MavenLogger(getLog());
         Path workDirectory = Paths.get(project.getBuild().getDirectory(), "scriptingbundle-maven-plugin");
         try {
-            Files.createDirectories(workDirectory);
-            if (sourceDirectories.isEmpty()) {
-                sourceDirectories = new HashSet<>(Constants.DEFAULT_SOURCE_DIRECTORIES);
+            if (sourceDirectories == null || sourceDirectories.isEmpty()) {
+                sourceDirectories = new ArrayList<>(Constants.DEFAULT_SOURCE_DIRECTORIES);
             }
-            sourceDirectories.stream()
+            Map<String, String> mappings = new HashMap<>(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
+            if (scriptEngineMappings != null) {
+                mappings.putAll(scriptEngineMappings);
+            }
+            scriptEngineMappings = mappings;
+            if (searchPaths == null || searchPaths.isEmpty()) {
+                searchPaths = Constants.DEFAULT_SEARCH_PATHS;
+            }
+            List<Path> sourceDirectoryPaths = sourceDirectories.stream()
                     .map(sourceDirectory -> {
                         Path sourceDirectoryPath = Paths.get(sourceDirectory);
                         if (!Files.exists(sourceDirectoryPath)) {
@@ -205,47 +280,50 @@ public class MetadataMojo extends AbstractMojo {
                         return sourceDirectoryPath;
                     })
                     .filter(sourceDirectory -> Files.exists(sourceDirectory) && Files.isDirectory(sourceDirectory))
-                    .forEach(sourceDirectoryPath -> {
-                        DirectoryScanner scanner = getDirectoryScanner(sourceDirectoryPath.toFile());
-                        Arrays.stream(scanner.getIncludedFiles())
-                                .map(sourceDirectoryPath::resolve)
-                                .forEach(file -> {
-                                    try {
-                                        if (!Files.isDirectory(file)) {
-                                            Path workingCopy =
-                                                    workDirectory.resolve(sourceDirectoryPath.relativize(file));
-                                            Path parent = workingCopy.getParent();
-                                            if (parent != null) {
-                                                Files.createDirectories(parent);
-                                            }
-                                            Files.copy(file, workingCopy, StandardCopyOption.REPLACE_EXISTING);
-                                        }
-                                    } catch (IOException e) {
-                                        logger.error("Cannot copy file into working directory.", e);
-                                    }
-                                });
-                    });
-            Map<String, String> mappings = new HashMap<>(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
-            if (scriptEngineMappings != null) {
-                mappings.putAll(scriptEngineMappings);
+                    .collect(Collectors.toList());
+            String configuration = new InputFingerprint()
+                    .addProperty("includes", Arrays.toString(includes))
+                    .addProperty("excludes", Arrays.toString(excludes))
+                    .addProperty("searchPaths", new TreeSet<>(searchPaths))
+                    .addProperty("scriptEngineMappings", new TreeMap<>(scriptEngineMappings))
+                    .addProperty("missingRequirementsOptional", missingRequirementsOptional)
+                    .addProperty("inContentPackage", inContentPackage)
+                    .addProperty("inPlaceAnalysis", inPlaceAnalysis)
+                    .toString();
+            IncrementalAnalysis incrementalAnalysis = null;
+            if (buildContext.isIncremental()) {
+                Object previousAnalysis = buildContext.getValue(INCREMENTAL_ANALYSIS_KEY);
+                if (previousAnalysis instanceof IncrementalAnalysis
+                        && configuration.equals(((IncrementalAnalysis) previousAnalysis).getConfiguration())) {
+                    incrementalAnalysis = (IncrementalAnalysis) previousAnalysis;
+                }
             }
-            scriptEngineMappings = mappings;
-            if (searchPaths == null || searchPaths.isEmpty()) {
-                searchPaths = Constants.DEFAULT_SEARCH_PATHS;
+            Capabilities previousCapabilities =
+                    incrementalAnalysis == null ? null : incrementalAnalysis.getCapabilities();
+            if (previousCapabilities != null && !hasDelta(sourceDirectoryPaths)) {
+                logger.debug("No source file changed since the previous incremental build.");
+                capabilities = previousCapabilities;
+            } else if (previousCapabilities != null) {
+                capabilities = analyseChanges(
+                        logger, workDirectory, sourceDirectoryPaths, inContentPackage, incrementalAnalysis);
+                incrementalAnalysis.setCapabilities(capabilities);
+                buildContext.setValue(INCREMENTAL_ANALYSIS_KEY, incrementalAnalysis);
+            } else {
+                if (buildContext.isIncremental()) {
+                    incrementalAnalysis = new IncrementalAnalysis(configuration);
+                }
+                capabilities = analyse(
+                        logger,
+                        workDirectory,
+                        sourceDirectoryPaths,
+                        configuration,
+                        inContentPackage,
+                        incrementalAnalysis);
+                if (incrementalAnalysis != null) {
+                    incrementalAnalysis.setCapabilities(capabilities);
+                    buildContext.setValue(INCREMENTAL_ANALYSIS_KEY, incrementalAnalysis);
+                }
             }
-            DirectoryScanner scanner = getDirectoryScanner(workDirectory.toFile());
-            List<String> scannerPaths = new ArrayList<>(Arrays.asList(scanner.getIncludedFiles()));
-            for (String file : scanner.getIncludedFiles()) {
-                scannerPaths.add(FilenameUtils.getFullPath(file));
-            }
-            capabilities = Capabilities.fromFileSystemTree(
-                    workDirectory,
-                    scannerPaths.stream().map(workDirectory::resolve),
-                    logger,
-                    searchPaths,
-                    scriptEngineMappings,
-                    missingRequirementsOptional,
-                    inContentPackage);
             String providedCapabilitiesDefinition = capabilities.getProvidedCapabilitiesString();
             String requiredCapabilitiesDefinition = capabilities.getRequiredCapabilitiesString();
             project.getProperties()
@@ -270,22 +348,262 @@ public class MetadataMojo extends AbstractMojo {
         }
     }
 
+    @NotNull
+    private Capabilities analyse(
+            @NotNull Logger logger,
+            @NotNull Path workDirectory,
+            @NotNull List<Path> sourceDirectoryPaths,
+            @NotNull String configuration,
+            boolean inContentPackage,
+            @Nullable IncrementalAnalysis incrementalAnalysis)
+            throws IOException {
+        AnalysableFilePredicate analysableFile = new AnalysableFilePredicate(scriptEngineMappings, inContentPackage);
+        Map<Path, Path> sourceFiles = new LinkedHashMap<>();
+        for (Path sourceDirectoryPath : sourceDirectoryPaths) {
+            DirectoryScanner scanner = getDirectoryScanner(sourceDirectoryPath.toFile());
+            Arrays.stream(scanner.getIncludedFiles())
+                    .map(sourceDirectoryPath::resolve)
+                    .filter(file -> analysableFile.test(file) && !Files.isDirectory(file))
+                    .forEach(file -> sourceFiles.putIfAbsent(sourceDirectoryPath.relativize(file), file));
+        }
+        AnalysisCache cache = null;
+        String fingerprint = null;
+        // incremental builds keep their state in the build context instead of fingerprinting every source file
+        if (analysisCache && incrementalAnalysis == null) {
+            try {
+                fingerprint = new InputFingerprint()
+                        .addProperty("configuration", configuration)
+                        .addFiles(sourceFiles)
+                        .toString();
+                cache = new AnalysisCache(Paths.get(workDirectory + ".capabilities"), logger);
+            } catch (IOException e) {
+                logger.warn("Cannot fingerprint the source files; the analysis cache will not be used.", e);
+            }
+            if (cache != null) {
+                Capabilities cachedCapabilities = cache.read(fingerprint);
+                if (cachedCapabilities != null) {
+                    return cachedCapabilities;
+                }
+            }
+        }
+        FileTree fileTree;
+        if (inPlaceAnalysis) {
+            fileTree = getOverlayFileTree(workDirectory, sourceFiles);
+        } else {
+            WorkDirectorySynchronizer.Result result =
+                    new WorkDirectorySynchronizer(workDirectory, logger, copyParallelism).synchronize(sourceFiles);
+            buildContext.refresh(workDirectory.toFile());
+            if (!result.getFailures().isEmpty()) {
+                // analyse the files which were synchronised, but do not cache capabilities which miss some of the
+                // sources
+                sourceFiles.keySet().removeAll(result.getFailures().keySet());
+                cache = null;
+            }
+            FileTreeSnapshot snapshot = FileTreeSnapshot.of(workDirectory);
+            if (incrementalAnalysis != null) {
+                incrementalAnalysis.setSnapshot(snapshot);
+            }
+            fileTree = snapshot;
+        }
+        if (incrementalAnalysis != null) {
+            incrementalAnalysis.getSourceFiles().putAll(sourceFiles);
+        }
+        Capabilities analysedCapabilities = Capabilities.fromFileSystemTree(
+                fileTree,
+                getAnalysedPaths(workDirectory, sourceFiles.keySet()).stream(),
+                logger,
+                searchPaths,
+                scriptEngineMappings,
+                missingRequirementsOptional,
+                inContentPackage,
+                analysisParallelism,
+                prefetchConcurrency,
+                incrementalAnalysis == null ? null : incrementalAnalysis.getPathCapabilities());
+        if (cache != null) {
+            cache.write(fingerprint, analysedCapabilities);
+            buildContext.refresh(new File(workDirectory + ".capabilities"));
+        }
+        return analysedCapabilities;
+    }
+
+    private boolean hasDelta(@NotNull List<Path> sourceDirectoryPaths) {
+        for (Path sourceDirectoryPath : sourceDirectoryPaths) {
+            if (buildContext.hasDelta(sourceDirectoryPath.toFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Analyses the source files which were created, modified or deleted since the previous incremental build. Only these files are
+     * synchronised with the working directory and read again into its snapshot; the capabilities of the paths which cannot depend
+     * on them are reused from the previous build.
+     *
+     * @param logger               the logger
+     * @param workDirectory        the root of the analysed tree
+     * @param sourceDirectoryPaths the source directories
+     * @param inContentPackage     whether the project is a content package
+     * @param incrementalAnalysis  the state of the previous incremental build, which is updated with the changes
+     * @return the capabilities
+     * @throws IOException if the working directory cannot be updated
+     */
+    @NotNull
+    private Capabilities analyseChanges(
+            @NotNull Logger logger,
+            @NotNull Path workDirectory,
+            @NotNull List<Path> sourceDirectoryPaths,
+            boolean inContentPackage,
+            @NotNull IncrementalAnalysis incrementalAnalysis)
+            throws IOException {
+        AnalysableFilePredicate analysableFile = new AnalysableFilePredicate(scriptEngineMappings, inContentPackage);
+        Map<Path, Path> sourceFiles = incrementalAnalysis.getSourceFiles();
+        Set<Path> changedFiles = getChangedFiles(sourceDirectoryPaths, sourceFiles.keySet());
+        Map<Path, Path> updatedFiles = new LinkedHashMap<>();
+        Set<Path> deletedFiles = new LinkedHashSet<>();
+        for (Path changedFile : changedFiles) {
+            Path sourceFile = getSourceFile(sourceDirectoryPaths, changedFile, analysableFile);
+            if (sourceFile != null) {
+                sourceFiles.put(changedFile, sourceFile);
+                updatedFiles.put(changedFile, sourceFile);
+            } else if (sourceFiles.remove(changedFile) != null) {
+                deletedFiles.add(changedFile);
+            }
+            incrementalAnalysis.invalidate(workDirectory.resolve(changedFile));
+        }
+        FileTree fileTree;
+        FileTreeSnapshot snapshot = incrementalAnalysis.getSnapshot();
+        if (snapshot == null) {
+            fileTree = getOverlayFileTree(workDirectory, sourceFiles);
+        } else {
+            WorkDirectorySynchronizer.Result result = new WorkDirectorySynchronizer(
+                            workDirectory, logger, copyParallelism)
+                    .update(updatedFiles, deletedFiles);
+            sourceFiles.keySet().removeAll(result.getFailures().keySet());
+            buildContext.refresh(workDirectory.toFile());
+            snapshot = snapshot.update(
+                    changedFiles.stream().map(workDirectory::resolve).collect(Collectors.toList()));
+            incrementalAnalysis.setSnapshot(snapshot);
+            fileTree = snapshot;
+        }
+        return Capabilities.fromFileSystemTree(
+                fileTree,
+                getAnalysedPaths(workDirectory, sourceFiles.keySet()).stream(),
+                logger,
+                searchPaths,
+                scriptEngineMappings,
+                missingRequirementsOptional,
+                inContentPackage,
+                analysisParallelism,
+                prefetchConcurrency,
+                incrementalAnalysis.getPathCapabilities());
+    }
+
+    /**
+     * Returns the files which were created, modified or deleted since the previous incremental build, as reported by the build
+     * context. A deleted folder is reported through the known files it contained.
+     *
+     * @param sourceDirectoryPaths the source directories
+     * @param knownFiles           the files analysed by the previous build, relative to the analysed tree
+     * @return the changed files, relative to the analysed tree
+     */
+    @NotNull
+    private Set<Path> getChangedFiles(@NotNull List<Path> sourceDirectoryPaths, @NotNull Set<Path> knownFiles) {
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        for (Path sourceDirectoryPath : sourceDirectoryPaths) {
+            File sourceDirectory = sourceDirectoryPath.toFile();
+            Scanner deleteScanner = buildContext.newDeleteScanner(sourceDirectory);
+            for (Scanner scanner : Arrays.asList(buildContext.newScanner(sourceDirectory), deleteScanner)) {
+                scanner.setIncludes(getIncludes());
+                scanner.setExcludes(getExcludes());
+                scanner.scan();
+                for (String changedFile : scanner.getIncludedFiles()) {
+                    changedFiles.add(Paths.get(changedFile));
+                }
+            }
+            for (String deletedFolder : deleteScanner.getIncludedDirectories()) {
+                if (!deletedFolder.isEmpty()) {
+                    Path folder = Paths.get(deletedFolder);
+                    knownFiles.stream().filter(file -> file.startsWith(folder)).forEach(changedFiles::add);
+                }
+            }
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Returns the file which provides the given path, from the first source directory which contains an analysable file under that
+     * path.
+     */
+    @Nullable
+    private static Path getSourceFile(
+            @NotNull List<Path> sourceDirectoryPaths,
+            @NotNull Path relativePath,
+            @NotNull AnalysableFilePredicate analysableFile) {
+        for (Path sourceDirectoryPath : sourceDirectoryPaths) {
+            Path file = sourceDirectoryPath.resolve(relativePath);
+            if (Files.isRegularFile(file) && analysableFile.test(file)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private static FileTree getOverlayFileTree(@NotNull Path workDirectory, @NotNull Map<Path, Path> sourceFiles) {
+        OverlayFileTree.Builder overlayBuilder = OverlayFileTree.builder(workDirectory);
+        sourceFiles.forEach(overlayBuilder::add);
+        return overlayBuilder.build();
+    }
+
+    /**
+     * Returns the paths which have to be analysed: first the files, in the order in which they were found, followed by each of
+     * their folders, listed only once.
+     *
+     * @param workDirectory the root of the analysed tree
+     * @param files         the files, relative to the root of the analysed tree
+     * @return an ordered set of files and folders
+     */
+    @NotNull
+    private static Set<Path> getAnalysedPaths(@NotNull Path workDirectory, @NotNull Set<Path> files) {
+        Set<Path> analysedPaths = new LinkedHashSet<>();
+        Set<Path> folders = new LinkedHashSet<>();
+        for (Path file : files) {
+            Path absoluteFile = workDirectory.resolve(file);
+            analysedPaths.add(absoluteFile);
+            Path folder = absoluteFile.getParent();
+            if (folder != null) {
+                folders.add(folder);
+            }
+        }
+        analysedPaths.addAll(folders);
+        return analysedPaths;
+    }
+
     @NotNull
     private DirectoryScanner getDirectoryScanner(@NotNull File directory) {
         DirectoryScanner scanner = new DirectoryScanner();
         scanner.setBasedir(directory);
+        scanner.setIncludes(getIncludes());
+        scanner.setExcludes(getExcludes());
+        scanner.scan();
+        return scanner;
+    }
+
+    @NotNull
+    private String[] getIncludes() {
         if (includes == null || includes.length == 0) {
-            scanner.setIncludes("**");
-        } else {
-            scanner.setIncludes(includes);
+            return new String[] {"**"};
         }
+        return includes;
+    }
+
+    @NotNull
+    private String[] getExcludes() {
         if (excludes == null || excludes.length == 0) {
-            scanner.setExcludes(Constants.DEFAULT_EXCLUDES.toArray(new String[0]));
-        } else {
-            scanner.setExcludes(excludes);
+            return Constants.DEFAULT_EXCLUDES.toArray(new String[0]);
         }
-        scanner.scan();
-        return scanner;
+        return excludes;
     }
 
     Capabilities getCapabilities() {
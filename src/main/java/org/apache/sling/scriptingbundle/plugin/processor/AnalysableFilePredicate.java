@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Classifies the files from the source directories of content packages, accepting only the ones whose content or name is relevant
+ * for the analysis: scripts with a script engine mapping, {@code extends} and {@code requires} files and {@code .content.xml} files.
+ * The folders containing these files are implied by their paths, so every other file (images, client libraries, JSON files etc.)
+ * can be left out of the analysed tree. Outside of content packages every file is accepted.
+ */
+public class AnalysableFilePredicate implements Predicate<Path> {
+
+    private final Map<String, String> scriptEngineMappings;
+    private final boolean inContentPackage;
+
+    public AnalysableFilePredicate(@NotNull Map<String, String> scriptEngineMappings, boolean inContentPackage) {
+        this.scriptEngineMappings = scriptEngineMappings;
+        this.inContentPackage = inContentPackage;
+    }
+
+    @Override
+    public boolean test(Path file) {
+        if (file == null) {
+            return false;
+        }
+        if (!inContentPackage) {
+            return true;
+        }
+        Path fileName = file.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toString();
+        if (Constants.EXTENDS_FILE.equals(name)
+                || Constants.REQUIRES_FILE.equals(name)
+                || org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML.equals(name)
+                || scriptEngineMappings.containsKey(FilenameUtils.getExtension(name))) {
+            return true;
+        }
+        return scriptEngineMappings.containsKey(FilenameUtils.getExtension(PlatformNameFormat.getRepositoryName(name)));
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -54,6 +55,11 @@ public final class Constants {
     public static final String BND_SEARCH_PATHS = "searchPaths";
     public static final String BND_MISSING_REQUIREMENTS_OPTIONAL = "missingRequirementsOptional";
     public static final String BND_SERVICE_RANKING = "serviceRanking";
+    public static final String BND_IN_PLACE_ANALYSIS = "inPlaceAnalysis";
+    public static final String BND_COPY_PARALLELISM = "copyParallelism";
+    public static final String BND_ANALYSIS_PARALLELISM = "analysisParallelism";
+    public static final String BND_PREFETCH_CONCURRENCY = "prefetchConcurrency";
+    public static final String BND_ANALYSIS_CACHE = "analysisCache";
 
     public static final String SLING_BUNDLED_SCRIPTS_RANKING_HEADER = "Sling-Bundled-Scripts-Ranking";
     public static final String SLING_RESOURCE_SUPER_TYPE_XML_LOCAL_NAME = "resourceSuperType";
@@ -113,7 +119,7 @@ public final class Constants {
         DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING = Collections.unmodifiableMap(scriptEngineMapping);
 
         DEFAULT_SEARCH_PATHS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("/libs", "/apps")));
-        DEFAULT_SOURCE_DIRECTORIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        DEFAULT_SOURCE_DIRECTORIES = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
                 Paths.get("src", "main", "scripts").toString(),
                 Paths.get("src", "main", "resources", "javax.script").toString())));
     }
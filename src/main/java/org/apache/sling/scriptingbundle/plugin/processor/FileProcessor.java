@@ -20,37 +20,49 @@ package org.apache.sling.scriptingbundle.plugin.processor;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import aQute.bnd.header.Attrs;
 import aQute.bnd.header.OSGiHeader;
 import aQute.bnd.header.Parameters;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.jackrabbit.vault.util.PlatformNameFormat;
 import org.apache.sling.api.resource.type.ResourceType;
+import org.apache.sling.scriptingbundle.plugin.capability.CapabilityPool;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapabilities;
 import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
 import org.apache.sling.scriptingbundle.plugin.capability.RequiredResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
 import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlReader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.VersionRange;
 
 public class FileProcessor {
 
     private final Logger log;
-    private final Set<String> searchPaths;
+    private final Set<String> searchPathPrefixes;
+    private final Map<String, Set<String>> searchPathResourceTypes = new ConcurrentHashMap<>();
+    private final CapabilityPool capabilityPool = new CapabilityPool();
     private final Map<String, String> scriptEngineMappings;
+    private final VaultContentXmlCache vaultContentXmlCache;
+    private final PrefetchedContent prefetchedContent;
+    private final ResourceTypeNames resourceTypeNames;
+    private final Map<Path, ParsedFile<RequiredResourceTypeCapability>> extendsFiles = new ConcurrentHashMap<>();
+    private final Map<Path, ParsedFile<Set<RequiredResourceTypeCapability>>> requiresFiles = new ConcurrentHashMap<>();
 
     private static final Collection<String> EXTENDS_ALLOWED_ATTRIBUTE_NAMES =
             Arrays.asList(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE, aQute.bnd.osgi.Constants.VERSION_ATTRIBUTE);
@@ -58,37 +70,68 @@ public class FileProcessor {
             Arrays.asList(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE, aQute.bnd.osgi.Constants.VERSION_ATTRIBUTE);
 
     public FileProcessor(Logger log, Set<String> searchPaths, Map<String, String> scriptEngineMappings) {
+        this(log, searchPaths, scriptEngineMappings, new VaultContentXmlCache());
+    }
+
+    public FileProcessor(
+            Logger log,
+            Set<String> searchPaths,
+            Map<String, String> scriptEngineMappings,
+            VaultContentXmlCache vaultContentXmlCache) {
+        this(log, searchPaths, scriptEngineMappings, vaultContentXmlCache, PrefetchedContent.none());
+    }
+
+    public FileProcessor(
+            Logger log,
+            Set<String> searchPaths,
+            Map<String, String> scriptEngineMappings,
+            VaultContentXmlCache vaultContentXmlCache,
+            PrefetchedContent prefetchedContent) {
+        this(log, searchPaths, scriptEngineMappings, vaultContentXmlCache, prefetchedContent, new ResourceTypeNames());
+    }
+
+    public FileProcessor(
+            Logger log,
+            Set<String> searchPaths,
+            Map<String, String> scriptEngineMappings,
+            VaultContentXmlCache vaultContentXmlCache,
+            PrefetchedContent prefetchedContent,
+            ResourceTypeNames resourceTypeNames) {
         this.log = log;
-        this.searchPaths = searchPaths;
+        this.searchPathPrefixes = new HashSet<>();
+        for (String searchPath : searchPaths) {
+            searchPathPrefixes.add(searchPath.endsWith("/") ? searchPath : searchPath + "/");
+        }
         this.scriptEngineMappings = scriptEngineMappings;
+        this.vaultContentXmlCache = vaultContentXmlCache;
+        this.prefetchedContent = prefetchedContent;
+        this.resourceTypeNames = resourceTypeNames;
     }
 
     public void processExtendsFile(
             @NotNull ResourceType resourceType,
             @NotNull Path file,
-            @NotNull Set<ProvidedResourceTypeCapability> providedCapabilities,
+            @NotNull ProvidedResourceTypeCapabilities providedCapabilities,
             @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities)
             throws IllegalArgumentException {
-        try {
-            List<String> extendedResources = Files.readAllLines(file, StandardCharsets.UTF_8);
-            if (extendedResources.size() == 1) {
-                processExtendedResourceType(
-                        resourceType, file, providedCapabilities, requiredCapabilities, extendedResources.get(0));
-            } else {
+        RequiredResourceTypeCapability extendedResourceType = getParsed(extendsFiles, file, () -> {
+            try {
+                List<String> extendedResources = prefetchedContent.readAllLines(file);
+                if (extendedResources.size() == 1) {
+                    return parseExtendedResourceType(file, extendedResources.get(0));
+                }
                 throw new IllegalArgumentException(
                         String.format("The file '%s' must contain one line only (not multiple ones)", file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Unable to read file %s.", file.toString()), e);
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Unable to read file %s.", file.toString()), e);
-        }
+        });
+        processExtendedResourceType(resourceType, providedCapabilities, requiredCapabilities, extendedResourceType);
     }
 
-    private void processExtendedResourceType(
-            @NotNull ResourceType resourceType,
-            @NotNull Path extendsFile,
-            @NotNull Set<ProvidedResourceTypeCapability> providedCapabilities,
-            @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities,
-            @NotNull String extendedResource) {
+    @NotNull
+    private RequiredResourceTypeCapability parseExtendedResourceType(
+            @NotNull Path extendsFile, @NotNull String extendedResource) {
         Parameters parameters = OSGiHeader.parseHeader(extendedResource);
         if (parameters.size() != 1) {
             throw new IllegalArgumentException(String.format(
@@ -105,52 +148,58 @@ public class FileProcessor {
         String extendedResourceType = FilenameUtils.normalize(extendsParameter.getKey(), true);
         boolean isOptional = aQute.bnd.osgi.Constants.OPTIONAL.equals(
                 extendsParameter.getValue().get(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE));
+        RequiredResourceTypeCapability.Builder requiredBuilder =
+                RequiredResourceTypeCapability.builder(capabilityPool).withResourceType(extendedResourceType);
+        if (isOptional) {
+            requiredBuilder.withIsOptional();
+        }
+        extractVersionRange(
+                extendsFile, requiredBuilder, extendsParameter.getValue().getVersion());
+        return requiredBuilder.build();
+    }
+
+    private void processExtendedResourceType(
+            @NotNull ResourceType resourceType,
+            @NotNull ProvidedResourceTypeCapabilities providedCapabilities,
+            @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities,
+            @NotNull RequiredResourceTypeCapability extendedResourceType) {
         Set<String> searchPathResourceTypes = processSearchPathResourceTypes(resourceType);
-        Optional<ProvidedResourceTypeCapability> rootCapability = providedCapabilities.stream()
-                .filter(capability -> capability.getResourceTypes().equals(searchPathResourceTypes)
-                        && capability.getSelectors().isEmpty()
-                        && StringUtils.isEmpty(capability.getRequestMethod())
-                        && StringUtils.isEmpty(capability.getRequestExtension()))
-                .findFirst();
+        Optional<ProvidedResourceTypeCapability> rootCapability =
+                providedCapabilities.get(searchPathResourceTypes, Collections.emptyList(), null, null).stream()
+                        .findFirst();
         rootCapability.ifPresent(capability -> {
             providedCapabilities.remove(capability);
-            ProvidedResourceTypeCapability replacement = ProvidedResourceTypeCapability.builder()
+            ProvidedResourceTypeCapability replacement = ProvidedResourceTypeCapability.builder(capabilityPool)
                     .fromCapability(capability)
-                    .withExtendsResourceType(extendedResourceType)
+                    .withExtendsResourceType(extendedResourceType.getResourceType())
                     .build();
             providedCapabilities.add(replacement);
         });
         if (!rootCapability.isPresent()) {
-            providedCapabilities.add(ProvidedResourceTypeCapability.builder()
+            providedCapabilities.add(ProvidedResourceTypeCapability.builder(capabilityPool)
                     .withResourceTypes(processSearchPathResourceTypes(resourceType))
                     .withVersion(resourceType.getVersion())
-                    .withExtendsResourceType(extendedResourceType)
+                    .withExtendsResourceType(extendedResourceType.getResourceType())
                     .build());
         }
-        RequiredResourceTypeCapability.Builder requiredBuilder =
-                RequiredResourceTypeCapability.builder().withResourceType(extendedResourceType);
-        if (isOptional) {
-            requiredBuilder.withIsOptional();
-        }
-        extractVersionRange(
-                extendsFile, requiredBuilder, extendsParameter.getValue().getVersion());
-        requiredCapabilities.add(requiredBuilder.build());
+        requiredCapabilities.add(extendedResourceType);
     }
 
     void processRequiresFile(
             @NotNull Path requiresFile, @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities) {
-        try {
-            List<String> requiredResourceTypes = Files.readAllLines(requiresFile, StandardCharsets.UTF_8);
-            processRequiredResourceTypes(requiresFile, requiredCapabilities, requiredResourceTypes);
-        } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Unable to read file %s.", requiresFile), e);
-        }
+        requiredCapabilities.addAll(getParsed(requiresFiles, requiresFile, () -> {
+            try {
+                return parseRequiredResourceTypes(requiresFile, prefetchedContent.readAllLines(requiresFile));
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Unable to read file %s.", requiresFile), e);
+            }
+        }));
     }
 
-    private void processRequiredResourceTypes(
-            @NotNull Path requiresFile,
-            @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities,
-            List<String> requiredResourceTypes) {
+    @NotNull
+    private Set<RequiredResourceTypeCapability> parseRequiredResourceTypes(
+            @NotNull Path requiresFile, @NotNull Collection<String> requiredResourceTypes) {
+        Set<RequiredResourceTypeCapability> requiredCapabilities = new LinkedHashSet<>();
         for (String requiredResourceType : requiredResourceTypes) {
             Parameters parameters = OSGiHeader.parseHeader(requiredResourceType);
             if (parameters.size() != 1) {
@@ -171,7 +220,7 @@ public class FileProcessor {
             boolean isOptional = aQute.bnd.osgi.Constants.OPTIONAL.equals(
                     requiresParameter.getValue().get(aQute.bnd.osgi.Constants.RESOLUTION_DIRECTIVE));
             RequiredResourceTypeCapability.Builder requiredBuilder =
-                    RequiredResourceTypeCapability.builder().withResourceType(resourceType);
+                    RequiredResourceTypeCapability.builder(capabilityPool).withResourceType(resourceType);
             if (isOptional) {
                 requiredBuilder.withIsOptional();
             }
@@ -179,13 +228,32 @@ public class FileProcessor {
                     requiresFile, requiredBuilder, requiresParameter.getValue().getVersion());
             requiredCapabilities.add(requiredBuilder.build());
         }
+        return Collections.unmodifiableSet(requiredCapabilities);
+    }
+
+    /**
+     * Returns the outcome of parsing the given file, parsing it only the first time it is requested during this run. A failure is
+     * cached as well and thrown again to every caller.
+     */
+    @NotNull
+    private static <T> T getParsed(
+            @NotNull Map<Path, ParsedFile<T>> parsedFiles, @NotNull Path file, @NotNull Supplier<T> parser) {
+        return parsedFiles
+                .computeIfAbsent(file, key -> {
+                    try {
+                        return new ParsedFile<>(parser.get(), null);
+                    } catch (IllegalArgumentException | UncheckedIOException e) {
+                        return new ParsedFile<>(null, e);
+                    }
+                })
+                .get();
     }
 
     public void processScriptFile(
             @NotNull Path resourceTypeDirectory,
             @NotNull Path scriptPath,
             @NotNull ResourceType resourceType,
-            @NotNull Set<ProvidedResourceTypeCapability> providedCapabilities,
+            @NotNull ProvidedResourceTypeCapabilities providedCapabilities,
             boolean inContentPackage) {
         String filePath = scriptPath.toString();
         String extension = FilenameUtils.getExtension(filePath);
@@ -199,7 +267,7 @@ public class FileProcessor {
                     for (int i = 0; i < pathSegments - 1; i++) {
                         selectors.add(
                                 inContentPackage
-                                        ? PlatformNameFormat.getRepositoryName(relativeResourceTypeFolder
+                                        ? resourceTypeNames.getRepositoryName(relativeResourceTypeFolder
                                                 .getName(i)
                                                 .toString())
                                         : relativeResourceTypeFolder.getName(i).toString());
@@ -207,7 +275,7 @@ public class FileProcessor {
                 }
                 String scriptFileName = scriptFile.toString();
                 Script script = Script.parseScript(
-                        inContentPackage ? PlatformNameFormat.getRepositoryPath(scriptFileName) : scriptFileName);
+                        inContentPackage ? resourceTypeNames.getRepositoryPath(scriptFileName) : scriptFileName);
                 if (script != null) {
                     String scriptEngine = scriptEngineMappings.get(script.getScriptExtension());
                     if (scriptEngine != null) {
@@ -223,15 +291,16 @@ public class FileProcessor {
                         if (selectors.isEmpty()
                                 && StringUtils.isEmpty(script.getRequestExtension())
                                 && StringUtils.isEmpty(script.getRequestMethod())) {
-                            extendsCapability = providedCapabilities.stream()
-                                    .filter(capability -> StringUtils.isNotEmpty(capability.getExtendsResourceType())
-                                            && capability.getResourceTypes().equals(searchPathProcessesResourceTypes)
-                                            && capability.getSelectors().isEmpty()
-                                            && StringUtils.isEmpty(capability.getRequestExtension())
-                                            && StringUtils.isEmpty(capability.getRequestMethod()))
-                                    .findAny();
+                            extendsCapability =
+                                    providedCapabilities
+                                            .get(searchPathProcessesResourceTypes, Collections.emptyList(), null, null)
+                                            .stream()
+                                            .filter(capability ->
+                                                    StringUtils.isNotEmpty(capability.getExtendsResourceType()))
+                                            .findAny();
                         }
-                        ProvidedResourceTypeCapability.Builder builder = ProvidedResourceTypeCapability.builder()
+                        ProvidedResourceTypeCapability.Builder builder = ProvidedResourceTypeCapability.builder(
+                                        capabilityPool)
                                 .withResourceTypes(searchPathProcessesResourceTypes)
                                 .withVersion(resourceType.getVersion())
                                 .withSelectors(selectors)
@@ -259,22 +328,32 @@ public class FileProcessor {
         }
     }
 
-    private Set<String> processSearchPathResourceTypes(@NotNull ResourceType resourceType) {
+    /**
+     * Expands the resource type to its absolute and relative forms, for each search path the resource type is found in. The expansion
+     * only depends on the resource type's {@link ResourceType#getType() type}, so it is computed once and the same unmodifiable set is
+     * then shared by all the capabilities of that resource type.
+     */
+    @NotNull
+    Set<String> processSearchPathResourceTypes(@NotNull ResourceType resourceType) {
+        return searchPathResourceTypes.computeIfAbsent(resourceType.getType(), this::expandSearchPathResourceType);
+    }
+
+    @NotNull
+    private Set<String> expandSearchPathResourceType(@NotNull String type) {
         Set<String> resourceTypes = new HashSet<>();
-        for (String searchPath : searchPaths) {
-            if (!searchPath.endsWith("/")) {
-                searchPath = searchPath + "/";
-            }
-            String absoluteType = "/" + resourceType.getType();
-            if (absoluteType.startsWith(searchPath)) {
+        String absoluteType = "/" + type;
+        // the search path prefixes all end with a '/', so only the prefixes of the absolute type ending in a '/' can
+        // match
+        for (int i = absoluteType.indexOf('/'); i != -1; i = absoluteType.indexOf('/', i + 1)) {
+            if (searchPathPrefixes.contains(absoluteType.substring(0, i + 1))) {
                 resourceTypes.add(absoluteType);
-                resourceTypes.add(absoluteType.substring(searchPath.length()));
+                resourceTypes.add(absoluteType.substring(i + 1));
             }
         }
         if (resourceTypes.isEmpty()) {
-            resourceTypes.add(resourceType.getType());
+            resourceTypes.add(type);
         }
-        return resourceTypes;
+        return Collections.unmodifiableSet(resourceTypes);
     }
 
     private void extractVersionRange(
@@ -293,19 +372,43 @@ public class FileProcessor {
     public void processVaultFile(
             @NotNull Path entry,
             @NotNull ResourceType resourceType,
-            @NotNull Set<ProvidedResourceTypeCapability> providedCapabilities,
+            @NotNull ProvidedResourceTypeCapabilities providedCapabilities,
             @NotNull Set<RequiredResourceTypeCapability> requiredCapabilities) {
         try {
-            VaultContentXmlReader reader = new VaultContentXmlReader(entry);
+            VaultContentXmlReader reader = vaultContentXmlCache.get(entry);
             Optional<String> slingResourceSuperType = reader.getSlingResourceSuperType();
-            slingResourceSuperType.ifPresent(resourceSuperType -> processExtendedResourceType(
-                    resourceType, entry, providedCapabilities, requiredCapabilities, resourceSuperType));
+            if (slingResourceSuperType.isPresent()) {
+                RequiredResourceTypeCapability extendedResourceType = getParsed(
+                        extendsFiles, entry, () -> parseExtendedResourceType(entry, slingResourceSuperType.get()));
+                processExtendedResourceType(
+                        resourceType, providedCapabilities, requiredCapabilities, extendedResourceType);
+            }
             if (!reader.getSlingRequiredResourceTypes().isEmpty()) {
-                processRequiredResourceTypes(
-                        entry, requiredCapabilities, new ArrayList<>(reader.getSlingRequiredResourceTypes()));
+                requiredCapabilities.addAll(getParsed(
+                        requiresFiles,
+                        entry,
+                        () -> parseRequiredResourceTypes(entry, reader.getSlingRequiredResourceTypes())));
             }
         } catch (IOException e) {
             throw new UncheckedIOException(String.format("Unable to read file %s.", entry), e);
         }
     }
+
+    private static final class ParsedFile<T> {
+        private final T value;
+        private final RuntimeException failure;
+
+        private ParsedFile(@Nullable T value, @Nullable RuntimeException failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        @NotNull
+        private T get() {
+            if (failure != null) {
+                throw failure;
+            }
+            return value;
+        }
+    }
 }
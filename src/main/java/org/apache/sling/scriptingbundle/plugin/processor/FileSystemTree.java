@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link FileTree} backed directly by a directory of the file system.
+ */
+public class FileSystemTree implements FileTree {
+
+    private final Path root;
+
+    public FileSystemTree(@NotNull Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public @NotNull Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isDirectory(@NotNull Path path) {
+        return Files.isDirectory(path);
+    }
+
+    @Override
+    public boolean isRegularFile(@NotNull Path path) {
+        return Files.isRegularFile(path);
+    }
+
+    @Override
+    public @NotNull List<Path> getChildren(@NotNull Path directory) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+            directoryStream.forEach(children::add);
+        }
+        return children;
+    }
+
+    @Override
+    public @NotNull Stream<Path> walk(@NotNull Path directory) throws IOException {
+        return Files.walk(directory);
+    }
+
+    @Override
+    public @NotNull Path getSource(@NotNull Path file) {
+        return file;
+    }
+}
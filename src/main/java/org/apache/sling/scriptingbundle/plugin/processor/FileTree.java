@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A read-only view of the tree of files analysed by the plugin. All the paths handled by a {@code FileTree} are located under its
+ * {@link #getRoot() root}; the content of a file has to be read from the path returned by {@link #getSource(Path)}, which may
+ * be located outside of the tree.
+ */
+public interface FileTree {
+
+    /**
+     * Returns the root of this tree.
+     *
+     * @return the root of this tree
+     */
+    @NotNull
+    Path getRoot();
+
+    /**
+     * Checks if the given path denotes a directory of this tree.
+     *
+     * @param path the path
+     * @return {@code true} if the path denotes a directory, {@code false} otherwise
+     */
+    boolean isDirectory(@NotNull Path path);
+
+    /**
+     * Checks if the given path denotes a regular file of this tree.
+     *
+     * @param path the path
+     * @return {@code true} if the path denotes a regular file, {@code false} otherwise
+     */
+    boolean isRegularFile(@NotNull Path path);
+
+    /**
+     * Returns the direct children (files and directories) of the given directory.
+     *
+     * @param directory the directory
+     * @return the children of the directory
+     * @throws IOException if the directory cannot be listed
+     */
+    @NotNull
+    List<Path> getChildren(@NotNull Path directory) throws IOException;
+
+    /**
+     * Returns a stream with the given directory and all of its descendants.
+     *
+     * @param directory the directory
+     * @return the directory and all of its descendants
+     * @throws IOException if the directory cannot be walked
+     */
+    @NotNull
+    Stream<Path> walk(@NotNull Path directory) throws IOException;
+
+    /**
+     * Returns the path from where the content of the given file can be read.
+     *
+     * @param file a file from this tree
+     * @return the path providing the file's content
+     */
+    @NotNull
+    Path getSource(@NotNull Path file);
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable {@link FileTree} holding a snapshot of a directory of the file system, taken with a single walk. The analysers ask
+ * for the type and the children of the same paths many times; a snapshot answers these questions from memory instead of issuing a
+ * system call for each of them.
+ * <p>
+ * The paths are stored in the order in which the walk visited them, so that the subtree of a directory is the contiguous range
+ * starting with the directory itself. The children of each directory are stored as a range of an index array, in compressed sparse
+ * row form.
+ */
+public final class FileTreeSnapshot implements FileTree {
+
+    private final Path root;
+    private final Path[] paths;
+    private final Map<Path, Integer> indexes;
+    private final BitSet directories;
+    private final BitSet regularFiles;
+    private final int[] subtreeEnds;
+    private final int[] childOffsets;
+    private final int[] children;
+
+    private FileTreeSnapshot(
+            @NotNull Path root,
+            @NotNull Path[] paths,
+            @NotNull BitSet directories,
+            @NotNull BitSet regularFiles,
+            @NotNull int[] parents,
+            @NotNull int[] subtreeEnds) {
+        this.root = root;
+        this.paths = paths;
+        this.directories = directories;
+        this.regularFiles = regularFiles;
+        this.subtreeEnds = subtreeEnds;
+        this.indexes = new HashMap<>(paths.length * 4 / 3 + 1);
+        for (int i = 0; i < paths.length; i++) {
+            indexes.put(paths[i], i);
+        }
+        // counting sort of the paths by parent, which keeps the children of a directory in the order of the walk
+        childOffsets = new int[paths.length + 1];
+        for (int i = 1; i < paths.length; i++) {
+            childOffsets[parents[i] + 1]++;
+        }
+        for (int i = 0; i < paths.length; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        children = new int[Math.max(paths.length - 1, 0)];
+        int[] next = Arrays.copyOf(childOffsets, paths.length);
+        for (int i = 1; i < paths.length; i++) {
+            children[next[parents[i]]++] = i;
+        }
+    }
+
+    /**
+     * Walks the given directory and records the type and the children of every path found inside it. Symbolic links are followed,
+     * like {@link FileSystemTree} does; paths which cannot be visited are left out of the snapshot.
+     *
+     * @param root the directory
+     * @return the snapshot
+     * @throws IOException if the directory cannot be walked
+     */
+    @NotNull
+    public static FileTreeSnapshot of(@NotNull Path root) throws IOException {
+        Walker walker = new Walker();
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, walker);
+        return walker.toSnapshot(root);
+    }
+
+    /**
+     * Returns a snapshot of the same directory, in which only the given paths, their subtrees and, for the paths which do not exist
+     * any more, their ancestor folders are read again from the file system. The rest of the tree is taken from this snapshot, so
+     * that an incremental build which knows the changed paths does not have to walk the whole directory again.
+     *
+     * @param changedPaths the paths which were created, modified or deleted since this snapshot was taken
+     * @return the updated snapshot
+     * @throws IOException if a changed folder cannot be walked
+     */
+    @NotNull
+    public FileTreeSnapshot update(@NotNull Collection<Path> changedPaths) throws IOException {
+        Map<Path, List<Path>> folders = new HashMap<>();
+        Set<Path> regularFiles = new HashSet<>();
+        for (int i = 0; i < paths.length; i++) {
+            if (directories.get(i)) {
+                List<Path> folderChildren = new ArrayList<>(childOffsets[i + 1] - childOffsets[i]);
+                for (int j = childOffsets[i]; j < childOffsets[i + 1]; j++) {
+                    folderChildren.add(paths[children[j]]);
+                }
+                folders.put(paths[i], folderChildren);
+            } else if (this.regularFiles.get(i)) {
+                regularFiles.add(paths[i]);
+            }
+        }
+        Tree tree = new Tree(folders, regularFiles);
+        for (Path changedPath : changedPaths) {
+            Path parent = changedPath.getParent();
+            if (parent == null || !changedPath.startsWith(root) || changedPath.equals(root)) {
+                continue;
+            }
+            tree.remove(changedPath);
+            if (Files.exists(changedPath)) {
+                tree.addFolders(parent);
+                Files.walkFileTree(changedPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, tree);
+            } else {
+                Path folder = changedPath.getParent();
+                while (folder != null
+                        && !folder.equals(root)
+                        && tree.isEmptyFolder(folder)
+                        && !Files.isDirectory(folder)) {
+                    tree.remove(folder);
+                    folder = folder.getParent();
+                }
+            }
+        }
+        Walker walker = new Walker();
+        tree.replay(root, walker);
+        return walker.toSnapshot(root);
+    }
+
+    @Override
+    public @NotNull Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isDirectory(@NotNull Path path) {
+        Integer index = indexes.get(path);
+        return index != null && directories.get(index);
+    }
+
+    @Override
+    public boolean isRegularFile(@NotNull Path path) {
+        Integer index = indexes.get(path);
+        return index != null && regularFiles.get(index);
+    }
+
+    @Override
+    public @NotNull List<Path> getChildren(@NotNull Path directory) {
+        Integer index = indexes.get(directory);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        int from = childOffsets[index];
+        int to = childOffsets[index + 1];
+        return new AbstractList<>() {
+            @Override
+            public Path get(int i) {
+                if (i < 0 || i >= to - from) {
+                    throw new IndexOutOfBoundsException(String.format("Index %d is out of bounds.", i));
+                }
+                return paths[children[from + i]];
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    @Override
+    public @NotNull Stream<Path> walk(@NotNull Path directory) {
+        Integer index = indexes.get(directory);
+        if (index == null) {
+            return Stream.empty();
+        }
+        return Arrays.stream(paths, index, subtreeEnds[index]);
+    }
+
+    @Override
+    public @NotNull Path getSource(@NotNull Path file) {
+        return file;
+    }
+
+    private static final class Walker extends SimpleFileVisitor<Path> {
+        private final List<Path> paths = new ArrayList<>();
+        private final BitSet directories = new BitSet();
+        private final BitSet regularFiles = new BitSet();
+        private int[] parents = new int[64];
+        private int[] subtreeEnds = new int[64];
+        private int[] openDirectories = new int[16];
+        private int openDirectoriesCount;
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+            openDirectory(directory);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            addFile(file, attributes.isRegularFile());
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+            if (paths.isEmpty()) {
+                throw exception;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path directory, IOException exception) {
+            closeDirectory();
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void openDirectory(@NotNull Path directory) {
+            int index = add(directory);
+            directories.set(index);
+            if (openDirectoriesCount == openDirectories.length) {
+                openDirectories = Arrays.copyOf(openDirectories, openDirectoriesCount * 2);
+            }
+            openDirectories[openDirectoriesCount++] = index;
+        }
+
+        private void addFile(@NotNull Path file, boolean regularFile) {
+            int index = add(file);
+            if (regularFile) {
+                regularFiles.set(index);
+            }
+        }
+
+        private void closeDirectory() {
+            subtreeEnds[openDirectories[--openDirectoriesCount]] = paths.size();
+        }
+
+        @NotNull
+        private FileTreeSnapshot toSnapshot(@NotNull Path root) {
+            return new FileTreeSnapshot(
+                    root,
+                    paths.toArray(new Path[0]),
+                    directories,
+                    regularFiles,
+                    Arrays.copyOf(parents, paths.size()),
+                    Arrays.copyOf(subtreeEnds, paths.size()));
+        }
+
+        private int add(@NotNull Path path) {
+            int index = paths.size();
+            paths.add(path);
+            if (index == parents.length) {
+                parents = Arrays.copyOf(parents, index * 2);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, index * 2);
+            }
+            parents[index] = openDirectoriesCount == 0 ? -1 : openDirectories[openDirectoriesCount - 1];
+            subtreeEnds[index] = index + 1;
+            return index;
+        }
+    }
+    /**
+     * A mutable copy of a snapshot's tree, which is updated with the changed paths before being turned into a new snapshot. The
+     * children of each folder keep their order; the paths found while walking a changed path are appended to their folder.
+     */
+    private static final class Tree extends SimpleFileVisitor<Path> {
+        private final Map<Path, List<Path>> folders;
+        private final Set<Path> regularFiles;
+
+        private Tree(@NotNull Map<Path, List<Path>> folders, @NotNull Set<Path> regularFiles) {
+            this.folders = folders;
+            this.regularFiles = regularFiles;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+            addChild(directory);
+            folders.putIfAbsent(directory, new ArrayList<>());
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            addChild(file);
+            if (attributes.isRegularFile()) {
+                regularFiles.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exception) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void addFolders(@NotNull Path folder) {
+            if (!folders.containsKey(folder)) {
+                Path parent = folder.getParent();
+                if (parent != null) {
+                    addFolders(parent);
+                }
+                addChild(folder);
+                folders.put(folder, new ArrayList<>());
+            }
+        }
+
+        private void addChild(@NotNull Path path) {
+            Path parent = path.getParent();
+            List<Path> siblings = parent == null ? null : folders.get(parent);
+            if (siblings != null && !siblings.contains(path)) {
+                siblings.add(path);
+            }
+        }
+
+        private boolean isEmptyFolder(@NotNull Path folder) {
+            List<Path> folderChildren = folders.get(folder);
+            return folderChildren != null && folderChildren.isEmpty();
+        }
+
+        private void remove(@NotNull Path path) {
+            List<Path> folderChildren = folders.remove(path);
+            if (folderChildren != null) {
+                folderChildren.forEach(this::remove);
+            }
+            regularFiles.remove(path);
+            Path parent = path.getParent();
+            List<Path> siblings = parent == null ? null : folders.get(parent);
+            if (siblings != null) {
+                siblings.remove(path);
+            }
+        }
+
+        private void replay(@NotNull Path folder, @NotNull Walker walker) {
+            walker.openDirectory(folder);
+            for (Path child : folders.getOrDefault(folder, Collections.emptyList())) {
+                if (folders.containsKey(child)) {
+                    replay(child, walker);
+                } else {
+                    walker.addFile(child, regularFiles.contains(child));
+                }
+            }
+            walker.closeDirectory();
+        }
+    }
+}
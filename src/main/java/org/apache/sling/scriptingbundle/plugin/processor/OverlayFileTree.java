@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link FileTree} which merges files coming from several source directories under a virtual root, without copying them. When
+ * the same relative path is provided more than once, the first one added to the {@link Builder} wins.
+ */
+public final class OverlayFileTree implements FileTree {
+
+    private final Path root;
+    private final Map<Path, Path> files;
+    private final Map<Path, List<Path>> directories;
+
+    private OverlayFileTree(
+            @NotNull Path root, @NotNull Map<Path, Path> files, @NotNull Map<Path, List<Path>> directories) {
+        this.root = root;
+        this.files = files;
+        this.directories = directories;
+    }
+
+    public static Builder builder(@NotNull Path root) {
+        return new Builder(root);
+    }
+
+    @Override
+    public @NotNull Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isDirectory(@NotNull Path path) {
+        return directories.containsKey(path);
+    }
+
+    @Override
+    public boolean isRegularFile(@NotNull Path path) {
+        return files.containsKey(path);
+    }
+
+    @Override
+    public @NotNull List<Path> getChildren(@NotNull Path directory) {
+        return directories.getOrDefault(directory, Collections.emptyList());
+    }
+
+    @Override
+    public @NotNull Stream<Path> walk(@NotNull Path directory) {
+        List<Path> paths = new ArrayList<>();
+        if (isDirectory(directory) || isRegularFile(directory)) {
+            collect(directory, paths);
+        }
+        return paths.stream();
+    }
+
+    @Override
+    public @NotNull Path getSource(@NotNull Path file) {
+        return files.getOrDefault(file, file);
+    }
+
+    private void collect(@NotNull Path path, @NotNull List<Path> paths) {
+        paths.add(path);
+        for (Path child : getChildren(path)) {
+            collect(child, paths);
+        }
+    }
+
+    public static class Builder {
+        private final Path root;
+        private final Map<Path, Path> files = new HashMap<>();
+        private final Map<Path, Set<Path>> directories = new HashMap<>();
+
+        private Builder(@NotNull Path root) {
+            this.root = root;
+            directories.put(root, new TreeSet<>());
+        }
+
+        /**
+         * Adds a file to the tree, unless the relative path is already provided by a previously added file or directory.
+         *
+         * @param relativePath the path of the file, relative to the root of the tree
+         * @param source       the path from where the file's content can be read
+         * @return {@code true} if the file was added, {@code false} if the path is already taken
+         */
+        public boolean add(@NotNull Path relativePath, @NotNull Path source) {
+            Path file = root.resolve(relativePath);
+            if (files.containsKey(file) || directories.containsKey(file)) {
+                return false;
+            }
+            for (Path parent = file.getParent(); parent != null && !parent.equals(root); parent = parent.getParent()) {
+                if (files.containsKey(parent)) {
+                    return false;
+                }
+            }
+            files.put(file, source);
+            Path child = file;
+            Path parent = file.getParent();
+            while (parent != null
+                    && directories
+                            .computeIfAbsent(parent, key -> new TreeSet<>())
+                            .add(child)) {
+                if (parent.equals(root)) {
+                    break;
+                }
+                child = parent;
+                parent = parent.getParent();
+            }
+            return true;
+        }
+
+        public OverlayFileTree build() {
+            Map<Path, List<Path>> directoryChildren = new HashMap<>();
+            directories.forEach((directory, children) ->
+                    directoryChildren.put(directory, Collections.unmodifiableList(new ArrayList<>(children))));
+            return new OverlayFileTree(root, new HashMap<>(files), directoryChildren);
+        }
+    }
+}
@@ -18,7 +18,6 @@
  */
 package org.apache.sling.scriptingbundle.plugin.processor;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -37,6 +36,7 @@ import org.jetbrains.annotations.NotNull;
 
 public class PathOnlyScriptAnalyser {
 
+    private final FileTree fileTree;
     private final Path scriptsDirectory;
     private final Predicate<Path> isNotAResourceTypeFolder;
     private final Map<String, String> scriptEngineMappings;
@@ -44,20 +44,21 @@ public class PathOnlyScriptAnalyser {
     private final boolean inContentPackage;
 
     public PathOnlyScriptAnalyser(
-            @NotNull Logger logger,
-            @NotNull Path scriptsDirectory,
+            @NotNull FileTree fileTree,
             @NotNull Map<String, String> scriptEngineMappings,
+            @NotNull ResourceTypeFolderPredicate resourceTypeFolderPredicate,
             @NotNull FileProcessor fileProcessor,
             boolean inContentPackage) {
-        this.scriptsDirectory = scriptsDirectory;
-        this.isNotAResourceTypeFolder = new ResourceTypeFolderPredicate(logger, inContentPackage).negate();
+        this.fileTree = fileTree;
+        this.scriptsDirectory = fileTree.getRoot();
+        this.isNotAResourceTypeFolder = resourceTypeFolderPredicate.negate();
         this.scriptEngineMappings = scriptEngineMappings;
         this.fileProcessor = fileProcessor;
         this.inContentPackage = inContentPackage;
     }
 
     public @NotNull Capabilities getProvidedScriptCapability(@NotNull Path file) {
-        if (Files.isRegularFile(file) && file.startsWith(scriptsDirectory)) {
+        if (fileTree.isRegularFile(file) && file.startsWith(scriptsDirectory)) {
             String filePath = file.toString();
             String extension = FilenameUtils.getExtension(filePath);
             if (StringUtils.isNotEmpty(extension) && scriptEngineMappings.containsKey(extension)) {
@@ -85,8 +86,8 @@ public class PathOnlyScriptAnalyser {
                                     .build();
                             Path requires = parent.resolve(Constants.REQUIRES_FILE);
                             Set<RequiredResourceTypeCapability> requiredCapabilities = new HashSet<>();
-                            if (Files.exists(requires)) {
-                                fileProcessor.processRequiresFile(requires, requiredCapabilities);
+                            if (fileTree.isRegularFile(requires)) {
+                                fileProcessor.processRequiresFile(fileTree.getSource(requires), requiredCapabilities);
                             }
                             return new Capabilities(
                                     Collections.emptySet(),
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Holds the metadata read ahead of an analysis run: the type and the children of the analysed folders and the lines of the
+ * {@code extends} and {@code requires} files; the {@code .content.xml} files are parsed into the run's {@link VaultContentXmlCache}.
+ * On file systems where each read is a network round trip, issuing these reads concurrently hides most of their latency, after
+ * which the analysis consumes the prefetched results instead of reading the files one by one. When the analysed tree is a
+ * {@link FileTreeSnapshot}, the folder metadata is already in memory and only the files are read ahead.
+ * <p>
+ * The reads are issued on virtual threads, which are only available on Java 21 or newer; on older runtimes
+ * {@link #prefetch(FileTree, Collection, VaultContentXmlCache, Logger, int)} returns an empty instance and the analysis reads
+ * everything synchronously. Failed reads are not recorded, so that the analysis repeats them and reports the failure as usual.
+ * Instances are thread-safe.
+ */
+public final class PrefetchedContent {
+
+    private static final PrefetchedContent NONE = new PrefetchedContent();
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getNewVirtualThreadPerTaskExecutor();
+
+    private final Map<Path, Boolean> directories = new ConcurrentHashMap<>();
+    private final Map<Path, List<Path>> children = new ConcurrentHashMap<>();
+    private final Map<Path, List<String>> lines = new ConcurrentHashMap<>();
+
+    private PrefetchedContent() {}
+
+    /**
+     * Returns an instance without any prefetched content.
+     *
+     * @return an empty instance
+     */
+    @NotNull
+    public static PrefetchedContent none() {
+        return NONE;
+    }
+
+    /**
+     * Checks if the runtime provides virtual threads, which are needed for prefetching.
+     *
+     * @return {@code true} if the content can be prefetched, {@code false} otherwise
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Reads the metadata of the given paths on virtual threads, with at most {@code concurrency} reads in flight.
+     *
+     * @param fileTree             the analysed tree
+     * @param paths                the files and folders which will be analysed
+     * @param vaultContentXmlCache the cache which will provide the parsed {@code .content.xml} files to the analysis
+     * @param logger               the logger
+     * @param concurrency          the maximum number of concurrent reads; values lower than {@code 1} disable prefetching
+     * @return the prefetched content
+     */
+    @NotNull
+    public static PrefetchedContent prefetch(
+            @NotNull FileTree fileTree,
+            @NotNull Collection<Path> paths,
+            @NotNull VaultContentXmlCache vaultContentXmlCache,
+            @NotNull Logger logger,
+            int concurrency) {
+        if (concurrency < 1 || paths.isEmpty()) {
+            return NONE;
+        }
+        ExecutorService executor = isSupported() ? newVirtualThreadPerTaskExecutor() : null;
+        if (executor == null) {
+            logger.info(
+                    "Prefetching requires virtual threads (Java 21 or newer); the files will be read synchronously.");
+            return NONE;
+        }
+        PrefetchedContent content = new PrefetchedContent();
+        boolean snapshot = fileTree instanceof FileTreeSnapshot;
+        Semaphore permits = new Semaphore(concurrency);
+        try {
+            for (Path path : paths) {
+                if (snapshot && !(isPrefetchedFile(path) && fileTree.isRegularFile(path))) {
+                    continue;
+                }
+                permits.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            if (snapshot) {
+                                content.readFile(fileTree, path, vaultContentXmlCache);
+                            } else {
+                                content.read(fileTree, path, vaultContentXmlCache);
+                            }
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            executor.shutdown();
+            permits.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(
+                    "Interrupted while prefetching the analysed files; the remaining files will be read synchronously.");
+        } finally {
+            executor.shutdownNow();
+        }
+        return content;
+    }
+
+    /**
+     * Returns a view of the given tree which answers from the prefetched content whenever possible.
+     *
+     * @param fileTree the tree whose content was prefetched
+     * @return the view, or {@code fileTree} itself if no folder metadata was prefetched
+     */
+    @NotNull
+    public FileTree wrap(@NotNull FileTree fileTree) {
+        if (directories.isEmpty()) {
+            return fileTree;
+        }
+        return new FileTree() {
+            @Override
+            public @NotNull Path getRoot() {
+                return fileTree.getRoot();
+            }
+
+            @Override
+            public boolean isDirectory(@NotNull Path path) {
+                Boolean directory = directories.get(path);
+                return directory != null ? directory : fileTree.isDirectory(path);
+            }
+
+            @Override
+            public boolean isRegularFile(@NotNull Path path) {
+                Boolean directory = directories.get(path);
+                return directory != null ? !directory : fileTree.isRegularFile(path);
+            }
+
+            @Override
+            public @NotNull List<Path> getChildren(@NotNull Path directory) throws IOException {
+                List<Path> prefetched = children.get(directory);
+                return prefetched != null ? prefetched : fileTree.getChildren(directory);
+            }
+
+            @Override
+            public @NotNull Stream<Path> walk(@NotNull Path directory) throws IOException {
+                return fileTree.walk(directory);
+            }
+
+            @Override
+            public @NotNull Path getSource(@NotNull Path file) {
+                return fileTree.getSource(file);
+            }
+        };
+    }
+
+    /**
+     * Returns the lines of the given file, as decoded with the UTF-8 charset.
+     *
+     * @param file the file
+     * @return the lines of the file
+     * @throws IOException if the file was not prefetched and cannot be read
+     */
+    @NotNull
+    public List<String> readAllLines(@NotNull Path file) throws IOException {
+        List<String> prefetched = lines.get(file);
+        return prefetched != null ? prefetched : Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    private void read(
+            @NotNull FileTree fileTree, @NotNull Path path, @NotNull VaultContentXmlCache vaultContentXmlCache) {
+        try {
+            if (fileTree.isDirectory(path)) {
+                directories.put(path, Boolean.TRUE);
+                children.put(path, Collections.unmodifiableList(fileTree.getChildren(path)));
+            } else if (fileTree.isRegularFile(path)) {
+                directories.put(path, Boolean.FALSE);
+                if (isPrefetchedFile(path)) {
+                    readFile(fileTree, path, vaultContentXmlCache);
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // the analysis will read the path again and report the failure
+        }
+    }
+
+    private void readFile(
+            @NotNull FileTree fileTree, @NotNull Path file, @NotNull VaultContentXmlCache vaultContentXmlCache) {
+        try {
+            Path source = fileTree.getSource(file);
+            if (org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML.equals(getName(file))) {
+                vaultContentXmlCache.get(source);
+            } else {
+                lines.put(source, Collections.unmodifiableList(Files.readAllLines(source, StandardCharsets.UTF_8)));
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // the analysis will read the file again and report the failure
+        }
+    }
+
+    private static boolean isPrefetchedFile(@NotNull Path path) {
+        String name = getName(path);
+        return Constants.EXTENDS_FILE.equals(name)
+                || Constants.REQUIRES_FILE.equals(name)
+                || org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML.equals(name);
+    }
+
+    @NotNull
+    private static String getName(@NotNull Path path) {
+        Path fileName = path.getFileName();
+        return fileName == null ? "" : fileName.toString();
+    }
+
+    @Nullable
+    private static Method getNewVirtualThreadPerTaskExecutor() {
+        if (Runtime.version().feature() < 21) {
+            // on Java 19 and 20 virtual threads are a preview feature, which cannot be used without --enable-preview
+            return null;
+        }
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            return null;
+        }
+    }
+}
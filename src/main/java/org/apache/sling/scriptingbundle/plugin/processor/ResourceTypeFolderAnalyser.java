@@ -20,65 +20,82 @@ package org.apache.sling.scriptingbundle.plugin.processor;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.jackrabbit.vault.util.PlatformNameFormat;
 import org.apache.sling.api.resource.type.ResourceType;
 import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
-import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapabilities;
 import org.apache.sling.scriptingbundle.plugin.capability.RequiredResourceTypeCapability;
 import org.jetbrains.annotations.NotNull;
 
 public class ResourceTypeFolderAnalyser {
 
     private final Logger logger;
+    private final FileTree fileTree;
     private final Path scriptsDirectory;
     private final ResourceTypeFolderPredicate resourceTypeFolderPredicate;
     private final FileProcessor fileProcessor;
     private final boolean inContentPackage;
+    private final ResourceTypeNames resourceTypeNames;
 
     public ResourceTypeFolderAnalyser(
             @NotNull Logger logger,
-            @NotNull Path scriptsDirectory,
+            @NotNull FileTree fileTree,
+            @NotNull ResourceTypeFolderPredicate resourceTypeFolderPredicate,
             @NotNull FileProcessor fileProcessor,
             boolean inContentPackage) {
+        this(logger, fileTree, resourceTypeFolderPredicate, fileProcessor, inContentPackage, new ResourceTypeNames());
+    }
+
+    public ResourceTypeFolderAnalyser(
+            @NotNull Logger logger,
+            @NotNull FileTree fileTree,
+            @NotNull ResourceTypeFolderPredicate resourceTypeFolderPredicate,
+            @NotNull FileProcessor fileProcessor,
+            boolean inContentPackage,
+            @NotNull ResourceTypeNames resourceTypeNames) {
         this.logger = logger;
-        this.scriptsDirectory = scriptsDirectory;
-        this.resourceTypeFolderPredicate = new ResourceTypeFolderPredicate(logger, inContentPackage);
+        this.fileTree = fileTree;
+        this.scriptsDirectory = fileTree.getRoot();
+        this.resourceTypeFolderPredicate = resourceTypeFolderPredicate;
         this.fileProcessor = fileProcessor;
         this.inContentPackage = inContentPackage;
+        this.resourceTypeNames = resourceTypeNames;
     }
 
     public Capabilities getCapabilities(@NotNull Path resourceTypeDirectory) {
-        Set<ProvidedResourceTypeCapability> providedCapabilities = new LinkedHashSet<>();
+        ProvidedResourceTypeCapabilities providedCapabilities = new ProvidedResourceTypeCapabilities();
         Set<RequiredResourceTypeCapability> requiredCapabilities = new LinkedHashSet<>();
         if (resourceTypeDirectory.startsWith(scriptsDirectory)
                 && resourceTypeFolderPredicate.test(resourceTypeDirectory)) {
-            try (DirectoryStream<Path> resourceTypeDirectoryStream = Files.newDirectoryStream(resourceTypeDirectory)) {
+            try {
                 Path relativeResourceTypeDirectory = scriptsDirectory.relativize(resourceTypeDirectory);
                 String resourceTypePath = FilenameUtils.normalize(relativeResourceTypeDirectory.toString(), true);
-                final ResourceType resourceType = ResourceType.parseResourceType(
-                        inContentPackage ? PlatformNameFormat.getRepositoryPath(resourceTypePath) : resourceTypePath);
-                resourceTypeDirectoryStream.forEach(entry -> {
-                    if (Files.isRegularFile(entry)) {
+                final ResourceType resourceType = resourceTypeNames.parseResourceType(
+                        inContentPackage ? resourceTypeNames.getRepositoryPath(resourceTypePath) : resourceTypePath);
+                for (Path entry : fileTree.getChildren(resourceTypeDirectory)) {
+                    if (fileTree.isRegularFile(entry)) {
                         Path file = entry.getFileName();
                         if (file != null) {
                             if (Constants.EXTENDS_FILE.equals(file.toString())) {
                                 fileProcessor.processExtendsFile(
-                                        resourceType, entry, providedCapabilities, requiredCapabilities);
+                                        resourceType,
+                                        fileTree.getSource(entry),
+                                        providedCapabilities,
+                                        requiredCapabilities);
                             } else if (Constants.REQUIRES_FILE.equals(file.toString())) {
-                                fileProcessor.processRequiresFile(entry, requiredCapabilities);
+                                fileProcessor.processRequiresFile(fileTree.getSource(entry), requiredCapabilities);
                             } else if (org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML.equals(
                                     file.toString())) {
                                 fileProcessor.processVaultFile(
-                                        entry, resourceType, providedCapabilities, requiredCapabilities);
+                                        fileTree.getSource(entry),
+                                        resourceType,
+                                        providedCapabilities,
+                                        requiredCapabilities);
                             } else {
                                 fileProcessor.processScriptFile(
                                         resourceTypeDirectory,
@@ -88,26 +105,14 @@ public class ResourceTypeFolderAnalyser {
                                         inContentPackage);
                             }
                         }
-                    } else if (Files.isDirectory(entry) && !resourceTypeFolderPredicate.test(entry)) {
-                        try (Stream<Path> selectorFilesStream = Files.walk(entry)
-                                .filter(Files::isRegularFile)
-                                .filter(file -> {
-                                    Path fileParent = file.getParent();
-                                    while (!resourceTypeDirectory.equals(fileParent)) {
-                                        if (resourceTypeFolderPredicate.test(fileParent)) {
-                                            return false;
-                                        }
-                                        fileParent = fileParent.getParent();
-                                    }
-                                    return true;
-                                })) {
-                            selectorFilesStream.forEach(file -> fileProcessor.processScriptFile(
-                                    resourceTypeDirectory, file, resourceType, providedCapabilities, inContentPackage));
+                    } else if (fileTree.isDirectory(entry) && !resourceTypeFolderPredicate.test(entry)) {
+                        try {
+                            processSelectorFolder(resourceTypeDirectory, entry, resourceType, providedCapabilities);
                         } catch (IOException e) {
                             logger.error(String.format("Unable to scan folder %s.", entry.toString()), e);
                         }
                     }
-                });
+                }
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -115,4 +120,24 @@ public class ResourceTypeFolderAnalyser {
 
         return new Capabilities(providedCapabilities, Collections.emptySet(), requiredCapabilities);
     }
+
+    /**
+     * Processes the scripts found in a selector folder and in its subfolders, in a single top-down descent which stops at the
+     * folders denoting another resource type, so that each folder is classified only once.
+     */
+    private void processSelectorFolder(
+            @NotNull Path resourceTypeDirectory,
+            @NotNull Path selectorFolder,
+            @NotNull ResourceType resourceType,
+            @NotNull ProvidedResourceTypeCapabilities providedCapabilities)
+            throws IOException {
+        for (Path entry : fileTree.getChildren(selectorFolder)) {
+            if (fileTree.isRegularFile(entry)) {
+                fileProcessor.processScriptFile(
+                        resourceTypeDirectory, entry, resourceType, providedCapabilities, inContentPackage);
+            } else if (fileTree.isDirectory(entry) && !resourceTypeFolderPredicate.test(entry)) {
+                processSelectorFolder(resourceTypeDirectory, entry, resourceType, providedCapabilities);
+            }
+        }
+    }
 }
@@ -19,23 +19,49 @@
 package org.apache.sling.scriptingbundle.plugin.processor;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
-import org.apache.jackrabbit.vault.util.PlatformNameFormat;
-import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlReader;
-import org.osgi.framework.Version;
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
 
+/**
+ * Checks if a folder denotes a resource type. The verdicts are memoised, so that each folder is inspected only once, no matter how
+ * many times it is tested; an instance should therefore be used for a single analysis run. Instances are thread-safe.
+ */
 public class ResourceTypeFolderPredicate implements Predicate<Path> {
 
     private final Logger logger;
+    private final FileTree fileTree;
+    private final Map<String, String> scriptEngineMappings;
+    private final VaultContentXmlCache vaultContentXmlCache;
     private final boolean inContentPackage;
+    private final ResourceTypeNames resourceTypeNames;
+    private final Map<Path, Boolean> verdicts = new ConcurrentHashMap<>();
+
+    public ResourceTypeFolderPredicate(
+            Logger logger,
+            FileTree fileTree,
+            Map<String, String> scriptEngineMappings,
+            VaultContentXmlCache vaultContentXmlCache,
+            boolean inContentPackage) {
+        this(logger, fileTree, scriptEngineMappings, vaultContentXmlCache, inContentPackage, new ResourceTypeNames());
+    }
 
-    public ResourceTypeFolderPredicate(Logger logger, boolean inContentPackage) {
+    public ResourceTypeFolderPredicate(
+            Logger logger,
+            FileTree fileTree,
+            Map<String, String> scriptEngineMappings,
+            VaultContentXmlCache vaultContentXmlCache,
+            boolean inContentPackage,
+            ResourceTypeNames resourceTypeNames) {
         this.logger = logger;
+        this.fileTree = fileTree;
+        this.scriptEngineMappings = scriptEngineMappings;
+        this.vaultContentXmlCache = vaultContentXmlCache;
         this.inContentPackage = inContentPackage;
+        this.resourceTypeNames = resourceTypeNames;
     }
 
     @Override
@@ -43,18 +69,27 @@ public class ResourceTypeFolderPredicate implements Predicate<Path> {
         if (folder == null) {
             return false;
         }
+        Boolean verdict = verdicts.get(folder);
+        if (verdict == null) {
+            verdict = isResourceTypeFolder(folder);
+            Boolean previous = verdicts.putIfAbsent(folder, verdict);
+            if (previous != null) {
+                verdict = previous;
+            }
+        }
+        return verdict;
+    }
+
+    private boolean isResourceTypeFolder(Path folder) {
         Path lastSegment = folder.getFileName();
         if (lastSegment == null) {
             return false;
         }
-        try {
-            Version.parseVersion(lastSegment.toString());
+        if (ResourceTypeNames.isVersion(lastSegment.toString())) {
             Path parent = folder.getParent();
             if (parent != null) {
                 lastSegment = parent.getFileName();
             }
-        } catch (IllegalArgumentException ignored) {
-            // last segment does not denote a version
         }
         String resourceTypeLabel;
         if (lastSegment != null) {
@@ -66,18 +101,23 @@ public class ResourceTypeFolderPredicate implements Predicate<Path> {
                 resourceTypeLabel = lastSegmentString;
             }
             if (inContentPackage) {
-                resourceTypeLabel = PlatformNameFormat.getRepositoryPath(resourceTypeLabel);
+                resourceTypeLabel = resourceTypeNames.getRepositoryPath(resourceTypeLabel);
             }
-            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(folder, Files::isRegularFile)) {
-                for (Path path : directoryStream) {
+            try {
+                for (Path path : fileTree.getChildren(folder)) {
                     Path fileName = path.getFileName();
-                    if (fileName != null) {
+                    if (fileName != null && fileTree.isRegularFile(path)) {
                         String childName = fileName.toString();
-                        Script script = Script.parseScript(
-                                inContentPackage ? PlatformNameFormat.getRepositoryPath(childName) : childName);
+                        // content packages are analysed without the files which are not mapped to a script engine, so
+                        // these files must not make a folder a resource type folder
+                        Script script = inContentPackage
+                                ? Script.parseScript(
+                                        resourceTypeNames.getRepositoryPath(childName), scriptEngineMappings)
+                                : Script.parseScript(childName);
                         if (Constants.EXTENDS_FILE.equals(childName)
                                 || org.apache.jackrabbit.vault.util.Constants.DOT_CONTENT_XML.equals(childName)
-                                        && new VaultContentXmlReader(path)
+                                        && vaultContentXmlCache
+                                                .get(fileTree.getSource(path))
                                                 .getSlingResourceSuperType()
                                                 .isPresent()
                                 || (script != null
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.apache.sling.api.resource.type.ResourceType;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.Version;
+
+/**
+ * Memoises the name translations and resource type parsing performed while analysing a tree: the {@link PlatformNameFormat}
+ * translations of folder and file names and the {@link ResourceType#parseResourceType(String)} results per resource type path. The
+ * same folder and script names are translated over and over while classifying folders and processing scripts, so an instance
+ * should be shared by all the components of an analysis run. Instances are thread-safe.
+ */
+public class ResourceTypeNames {
+
+    private final Map<String, String> repositoryNames = new ConcurrentHashMap<>();
+    private final Map<String, String> repositoryPaths = new ConcurrentHashMap<>();
+    private final Map<String, ResourceType> resourceTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the repository name of a platform name, as translated by {@link PlatformNameFormat#getRepositoryName(String)}.
+     *
+     * @param name the platform name
+     * @return the repository name
+     */
+    @NotNull
+    public String getRepositoryName(@NotNull String name) {
+        return repositoryNames.computeIfAbsent(name, PlatformNameFormat::getRepositoryName);
+    }
+
+    /**
+     * Returns the repository path of a platform path, as translated by {@link PlatformNameFormat#getRepositoryPath(String)}.
+     *
+     * @param path the platform path
+     * @return the repository path
+     */
+    @NotNull
+    public String getRepositoryPath(@NotNull String path) {
+        return repositoryPaths.computeIfAbsent(path, PlatformNameFormat::getRepositoryPath);
+    }
+
+    /**
+     * Parses the resource type denoted by a resource type folder path, as {@link ResourceType#parseResourceType(String)} does.
+     *
+     * @param resourceTypePath the resource type folder path, using {@code /} as separator
+     * @return the resource type
+     */
+    @NotNull
+    public ResourceType parseResourceType(@NotNull String resourceTypePath) {
+        return resourceTypes.computeIfAbsent(resourceTypePath, ResourceType::parseResourceType);
+    }
+
+    /**
+     * Checks if a path segment denotes a version, accepting exactly the values which {@link Version#parseVersion(String)} accepts,
+     * but without throwing and catching an exception for every segment which is not a version.
+     *
+     * @param segment the path segment
+     * @return {@code true} if the segment can be parsed as a {@link Version}, {@code false} otherwise
+     */
+    public static boolean isVersion(@NotNull String segment) {
+        String version = segment.trim();
+        int length = version.length();
+        if (length == 0) {
+            return true;
+        }
+        int start = 0;
+        for (int component = 0; component < 3; component++) {
+            int end = version.indexOf('.', start);
+            if (end == -1) {
+                return isVersionNumber(version, start, length);
+            }
+            if (!isVersionNumber(version, start, end)) {
+                return false;
+            }
+            start = end + 1;
+        }
+        if (start == length) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = version.charAt(i);
+            if (!(('A' <= c && c <= 'Z') || ('a' <= c && c <= 'z') || ('0' <= c && c <= '9') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the given range holds a number which {@link Integer#parseInt(String)} accepts and which is not negative.
+     */
+    private static boolean isVersionNumber(@NotNull String version, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (version.charAt(i) == '+' || version.charAt(i) == '-')) {
+            negative = version.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(version.charAt(i), 10);
+            if (digit < 0) {
+                return false;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return !negative || value == 0;
+    }
+}
@@ -18,11 +18,25 @@
  */
 package org.apache.sling.scriptingbundle.plugin.processor;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class Script {
 
+    private static final String[] COMMON_PARTS;
+
+    static {
+        Set<String> commonParts = new LinkedHashSet<>(Constants.METHODS);
+        commonParts.addAll(Arrays.asList("html", "json", "txt", "xml", "js", "css"));
+        commonParts.addAll(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING.keySet());
+        COMMON_PARTS = commonParts.toArray(new String[0]);
+    }
+
     private final String name;
     private final String requestExtension;
     private final String requestMethod;
@@ -59,17 +73,53 @@ public class Script {
         return scriptExtension;
     }
 
+    /**
+     * Parses a script file name following the
+     * <a href="https://sling.apache.org/documentation/the-sling-engine/url-to-script-resolution.html#script-naming-conventions">
+     * script naming conventions</a>.
+     *
+     * @param fileName the file name
+     * @return the script, or {@code null} if the file name doesn't have between two and four dot-separated parts
+     */
     @Nullable
     static Script parseScript(@NotNull String fileName) {
-        String[] parts = fileName.split("\\.");
-        if (parts.length < 2 || parts.length > 4) {
+        return parseScript(fileName, null);
+    }
+
+    /**
+     * Parses a script file name, like {@link #parseScript(String)}, but returns {@code null} as soon as the script extension is
+     * found to have no script engine mapping, without parsing the rest of the name.
+     *
+     * @param fileName             the file name
+     * @param scriptEngineMappings the script engine mappings, keyed by script extension; if {@code null}, any extension is accepted
+     * @return the script, or {@code null} if the file name doesn't denote a script
+     */
+    @Nullable
+    static Script parseScript(@NotNull String fileName, @Nullable Map<String, String> scriptEngineMappings) {
+        // same parts as fileName.split("\\."), which drops the trailing empty strings
+        int end = fileName.length();
+        while (end > 0 && fileName.charAt(end - 1) == '.') {
+            end--;
+        }
+        int lastDot = fileName.lastIndexOf('.', end - 1);
+        if (lastDot == -1) {
+            return null;
+        }
+        if (scriptEngineMappings != null && !containsKey(scriptEngineMappings, fileName, lastDot + 1, end)) {
+            return null;
+        }
+        int firstDot = fileName.indexOf('.');
+        int secondDot = firstDot == lastDot ? -1 : fileName.indexOf('.', firstDot + 1);
+        int thirdDot = secondDot == -1 || secondDot == lastDot ? -1 : fileName.indexOf('.', secondDot + 1);
+        if (thirdDot != -1 && thirdDot != lastDot) {
+            // more than four parts
             return null;
         }
-        String name = parts[0];
-        String scriptExtension = parts[parts.length - 1];
+        String name = intern(fileName, 0, firstDot);
+        String scriptExtension = intern(fileName, lastDot + 1, end);
         String requestExtension = null;
         String requestMethod = null;
-        if (parts.length == 2) {
+        if (secondDot == -1) {
             if (Constants.METHODS.contains(name)) {
                 requestMethod = name;
                 name = null;
@@ -77,19 +127,46 @@ public class Script {
                 requestExtension = name;
                 name = null;
             }
-        }
-        if (parts.length == 3) {
-            String middle = parts[1];
+        } else if (thirdDot == -1) {
+            String middle = intern(fileName, firstDot + 1, secondDot);
             if (Constants.METHODS.contains(middle)) {
                 requestMethod = middle;
             } else {
                 requestExtension = middle;
             }
-        }
-        if (parts.length == 4) {
-            requestExtension = parts[1];
-            requestMethod = parts[2];
+        } else {
+            requestExtension = intern(fileName, firstDot + 1, secondDot);
+            requestMethod = intern(fileName, secondDot + 1, thirdDot);
         }
         return new Script(name, requestExtension, requestMethod, scriptExtension);
     }
+
+    private static boolean containsKey(
+            @NotNull Map<String, String> scriptEngineMappings, @NotNull String fileName, int start, int end) {
+        int length = end - start;
+        for (String extension : scriptEngineMappings.keySet()) {
+            if (extension.length() == length && fileName.regionMatches(start, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the {@code [start, end)} region of {@code value}, reusing the instance from {@link #COMMON_PARTS} when the region
+     * denotes a well-known request method, request extension or script extension.
+     */
+    @NotNull
+    private static String intern(@NotNull String value, int start, int end) {
+        int length = end - start;
+        if (length == value.length()) {
+            return value;
+        }
+        for (String commonPart : COMMON_PARTS) {
+            if (commonPart.length() == length && value.regionMatches(start, commonPart, 0, length)) {
+                return commonPart;
+            }
+        }
+        return value.substring(start, end);
+    }
 }
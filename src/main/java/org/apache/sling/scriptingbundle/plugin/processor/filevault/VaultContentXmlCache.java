@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor.filevault;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the outcome of reading {@code .content.xml} files with a {@link VaultContentXmlReader}, so that a file which is needed
+ * both to detect a resource type folder and to process its metadata is parsed only once per analysis run. An entry is reused as
+ * long as the file's size and last modification time don't change. Parse failures are cached as well: an invalid file is not
+ * parsed again and the same exception is thrown to every caller. Instances are thread-safe.
+ */
+public class VaultContentXmlCache {
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the reader for the given {@code .content.xml} file, parsing the file only if it was not parsed before or if it changed
+     * in the meantime.
+     *
+     * @param path the path of the {@code .content.xml} file
+     * @return the reader
+     * @throws IOException              if the file cannot be read or parsed
+     * @throws IllegalArgumentException if the file does not provide valid Docview content
+     */
+    @NotNull
+    public VaultContentXmlReader get(@NotNull Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+            try {
+                entry = new Entry(size, lastModified, new VaultContentXmlReader(path), null);
+            } catch (IOException | IllegalArgumentException e) {
+                entry = new Entry(size, lastModified, null, e);
+            }
+            entries.put(path, entry);
+        }
+        if (entry.failure instanceof IOException) {
+            throw (IOException) entry.failure;
+        }
+        if (entry.failure instanceof IllegalArgumentException) {
+            throw (IllegalArgumentException) entry.failure;
+        }
+        return entry.reader;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final VaultContentXmlReader reader;
+        private final Exception failure;
+
+        private Entry(
+                long size, long lastModified, @Nullable VaultContentXmlReader reader, @Nullable Exception failure) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.reader = reader;
+            this.failure = failure;
+        }
+    }
+}
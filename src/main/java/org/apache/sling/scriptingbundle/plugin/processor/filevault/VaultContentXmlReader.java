@@ -20,9 +20,9 @@ package org.apache.sling.scriptingbundle.plugin.processor.filevault;
 
 import javax.jcr.PropertyType;
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -42,23 +42,29 @@ import org.apache.jackrabbit.vault.util.DocViewProperty;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 import org.apache.sling.scriptingbundle.plugin.processor.Constants;
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
+/**
+ * Reads the Sling specific properties of a FileVault <a href="https://jackrabbit.apache.org/filevault/docview.html">Docview</a>
+ * {@code .content.xml} file. Only the attributes of the root {@code jcr:root} element are relevant, so the file is streamed and
+ * the parsing stops right after the root element's start tag, no matter how large the rest of the document is.
+ */
 public final class VaultContentXmlReader {
 
-    private static final DocumentBuilderFactory documentBuilderFactory;
+    private static final XMLInputFactory xmlInputFactory;
 
     static {
         try {
-            documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-            documentBuilderFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-            documentBuilderFactory.setAttribute(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-            documentBuilderFactory.setExpandEntityReferences(false);
-            documentBuilderFactory.setNamespaceAware(true);
+            xmlInputFactory = XMLInputFactory.newFactory();
+            if (xmlInputFactory.isPropertySupported(XMLConstants.ACCESS_EXTERNAL_DTD)) {
+                xmlInputFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            }
+            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            xmlInputFactory.setXMLResolver((publicID, systemID, baseURI, namespace) -> {
+                throw new XMLStreamException(String.format("Access to external resource %s is not allowed.", systemID));
+            });
         } catch (IllegalArgumentException e) {
             throw new IllegalStateException("Cannot disable DTD features.", e);
         }
@@ -71,59 +77,59 @@ public final class VaultContentXmlReader {
     public VaultContentXmlReader(@NotNull Path path) throws IOException {
         this.path = path;
         this.requiredResourceTypes = new HashSet<>();
+        String resourceSuperTypeRawValue;
+        String requiredResourceTypesRawValue;
         try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse(new InputSource(reader));
-            NodeList nodeList = document.getElementsByTagNameNS(
-                    NameConstants.JCR_ROOT.getNamespaceURI(), NameConstants.JCR_ROOT.getLocalName());
-            if (nodeList.getLength() == 1 && nodeList.item(0).equals(document.getDocumentElement())) {
-                String resourceSuperTypeRawValue = document.getDocumentElement()
-                        .getAttributeNS(
-                                JcrResourceConstants.SLING_NAMESPACE_URI,
-                                Constants.SLING_RESOURCE_SUPER_TYPE_XML_LOCAL_NAME);
-                if (StringUtils.isNotEmpty(resourceSuperTypeRawValue)) {
-                    DocViewProperty resourceSuperTypeDocViewProperty = DocViewProperty.parse(
-                            JcrResourceConstants.SLING_RESOURCE_SUPER_TYPE_PROPERTY, resourceSuperTypeRawValue);
-                    if ((resourceSuperTypeDocViewProperty.type == PropertyType.STRING
-                                    || resourceSuperTypeDocViewProperty.type == PropertyType.UNDEFINED)
-                            && !resourceSuperTypeDocViewProperty.isMulti) {
-                        this.resourceSuperType = resourceSuperTypeDocViewProperty.values[0];
-                    } else {
-                        throw new IllegalArgumentException(String.format(
-                                "Invalid %s property value (%s) in file %s.",
-                                JcrResourceConstants.SLING_RESOURCE_SUPER_TYPE_PROPERTY,
-                                resourceSuperTypeRawValue,
-                                path));
-                    }
-                } else {
-                    this.resourceSuperType = null;
+            XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(reader);
+            try {
+                while (xmlStreamReader.hasNext() && !xmlStreamReader.isStartElement()) {
+                    xmlStreamReader.next();
                 }
-
-                String requiredResourceTypesRawValue = document.getDocumentElement()
-                        .getAttributeNS(
-                                JcrResourceConstants.SLING_NAMESPACE_URI,
-                                Constants.SLING_REQUIRED_RESOURCE_TYPES_XML_LOCAL_NAME);
-                if (StringUtils.isNotEmpty(requiredResourceTypesRawValue)) {
-                    DocViewProperty requiredResourceTypesDocViewProperty = DocViewProperty.parse(
-                            Constants.SLING_REQUIRED_RESOURCE_TYPES, requiredResourceTypesRawValue);
-                    if (requiredResourceTypesDocViewProperty.isMulti
-                            && (requiredResourceTypesDocViewProperty.type == PropertyType.STRING
-                                    || requiredResourceTypesDocViewProperty.type == PropertyType.UNDEFINED)) {
-                        requiredResourceTypes.addAll(Arrays.asList(requiredResourceTypesDocViewProperty.values));
-                    } else {
-                        throw new IllegalArgumentException(String.format(
-                                "Invalid %s property value (%s) in file %s.",
-                                Constants.SLING_REQUIRED_RESOURCE_TYPES, requiredResourceTypesRawValue, path));
-                    }
+                if (!xmlStreamReader.isStartElement()
+                        || !NameConstants.JCR_ROOT.getNamespaceURI().equals(xmlStreamReader.getNamespaceURI())
+                        || !NameConstants.JCR_ROOT.getLocalName().equals(xmlStreamReader.getLocalName())) {
+                    throw new IllegalArgumentException(String.format(
+                            "Path %s does not seem to provide a Docview format - https://jackrabbit.apache.org/filevault/docview.html.",
+                            path));
                 }
-
+                resourceSuperTypeRawValue = xmlStreamReader.getAttributeValue(
+                        JcrResourceConstants.SLING_NAMESPACE_URI, Constants.SLING_RESOURCE_SUPER_TYPE_XML_LOCAL_NAME);
+                requiredResourceTypesRawValue = xmlStreamReader.getAttributeValue(
+                        JcrResourceConstants.SLING_NAMESPACE_URI,
+                        Constants.SLING_REQUIRED_RESOURCE_TYPES_XML_LOCAL_NAME);
+            } finally {
+                xmlStreamReader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        if (StringUtils.isNotEmpty(resourceSuperTypeRawValue)) {
+            DocViewProperty resourceSuperTypeDocViewProperty = DocViewProperty.parse(
+                    JcrResourceConstants.SLING_RESOURCE_SUPER_TYPE_PROPERTY, resourceSuperTypeRawValue);
+            if ((resourceSuperTypeDocViewProperty.type == PropertyType.STRING
+                            || resourceSuperTypeDocViewProperty.type == PropertyType.UNDEFINED)
+                    && !resourceSuperTypeDocViewProperty.isMulti) {
+                this.resourceSuperType = resourceSuperTypeDocViewProperty.values[0];
             } else {
                 throw new IllegalArgumentException(String.format(
-                        "Path %s does not seem to provide a Docview format - https://jackrabbit.apache.org/filevault/docview.html.",
-                        path));
+                        "Invalid %s property value (%s) in file %s.",
+                        JcrResourceConstants.SLING_RESOURCE_SUPER_TYPE_PROPERTY, resourceSuperTypeRawValue, path));
+            }
+        } else {
+            this.resourceSuperType = null;
+        }
+        if (StringUtils.isNotEmpty(requiredResourceTypesRawValue)) {
+            DocViewProperty requiredResourceTypesDocViewProperty =
+                    DocViewProperty.parse(Constants.SLING_REQUIRED_RESOURCE_TYPES, requiredResourceTypesRawValue);
+            if (requiredResourceTypesDocViewProperty.isMulti
+                    && (requiredResourceTypesDocViewProperty.type == PropertyType.STRING
+                            || requiredResourceTypesDocViewProperty.type == PropertyType.UNDEFINED)) {
+                requiredResourceTypes.addAll(Arrays.asList(requiredResourceTypesDocViewProperty.values));
+            } else {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid %s property value (%s) in file %s.",
+                        Constants.SLING_REQUIRED_RESOURCE_TYPES, requiredResourceTypesRawValue, path));
             }
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException(e);
         }
     }
 
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedScriptCapability;
+import org.apache.sling.scriptingbundle.plugin.capability.RequiredResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.processor.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+/**
+ * Stores the {@link Capabilities} computed by the previous build, together with the {@link InputFingerprint} of the inputs they
+ * were computed from. When the inputs didn't change, the capabilities are read back from the cache instead of synchronising and
+ * analysing the source directories again.
+ * <p>
+ * The capabilities are stored in a compact binary form: every distinct string is written once and then referenced by its index,
+ * since the same resource types, script engines and selectors are repeated by many capabilities. The iteration order of all the
+ * collections is kept, so that the generated headers are identical to the ones of the build which wrote the cache.
+ */
+public class AnalysisCache {
+
+    /**
+     * Identifies the format of the cache and the plugin version which wrote it, since the capabilities computed from the same
+     * inputs can change from one plugin version to another.
+     */
+    private static final String HEADER = "scriptingbundle-maven-plugin analysis cache v1 "
+            + Objects.toString(AnalysisCache.class.getPackage().getImplementationVersion(), "development");
+
+    private final Path cacheFile;
+    private final Logger logger;
+
+    public AnalysisCache(@NotNull Path cacheFile, @NotNull Logger logger) {
+        this.cacheFile = cacheFile;
+        this.logger = logger;
+    }
+
+    /**
+     * Reads the capabilities stored in the cache, if they were computed from inputs with the given fingerprint. A missing, stale or
+     * unreadable cache results in {@code null}, which means that the inputs have to be analysed again.
+     *
+     * @param fingerprint the fingerprint of the current inputs
+     * @return the cached capabilities, or {@code null}
+     */
+    @Nullable
+    public Capabilities read(@NotNull String fingerprint) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (!HEADER.equals(input.readUTF())) {
+                logger.debug(
+                        String.format("Ignoring analysis cache %s written by a different plugin version.", cacheFile));
+                return null;
+            }
+            if (!fingerprint.equals(input.readUTF())) {
+                logger.debug(String.format("The inputs changed since analysis cache %s was written.", cacheFile));
+                return null;
+            }
+            Capabilities capabilities = new Reader(input).readCapabilities();
+            logger.info(String.format("Reusing the capabilities from analysis cache %s.", cacheFile));
+            return capabilities;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn(
+                    String.format("Unable to read analysis cache %s; the sources will be analysed again.", cacheFile),
+                    e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the capabilities computed from inputs with the given fingerprint. A failure to write the cache is logged, since it
+     * only means that the next build will have to analyse its inputs again.
+     *
+     * @param fingerprint  the fingerprint of the analysed inputs
+     * @param capabilities the capabilities
+     */
+    public void write(@NotNull String fingerprint, @NotNull Capabilities capabilities) {
+        try {
+            Path parent = cacheFile.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile)))) {
+                output.writeUTF(HEADER);
+                output.writeUTF(fingerprint);
+                new Writer(output).writeCapabilities(capabilities);
+            }
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to write analysis cache %s.", cacheFile), e);
+            try {
+                Files.deleteIfExists(cacheFile);
+            } catch (IOException ignored) {
+                // a partially written cache is detected when it's read
+            }
+        }
+    }
+
+    private static final class Writer {
+        private final DataOutputStream output;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Writer(@NotNull DataOutputStream output) {
+            this.output = output;
+        }
+
+        private void writeCapabilities(@NotNull Capabilities capabilities) throws IOException {
+            Set<ProvidedResourceTypeCapability> provided = capabilities.getProvidedResourceTypeCapabilities();
+            writeNumber(provided.size());
+            for (ProvidedResourceTypeCapability capability : provided) {
+                writeStrings(capability.getResourceTypes());
+                writeString(capability.getScriptEngine());
+                writeString(capability.getScriptExtension());
+                writeString(capability.getExtendsResourceType());
+                Version version = capability.getVersion();
+                writeString(version == null ? null : version.toString());
+                writeString(capability.getRequestExtension());
+                writeString(capability.getRequestMethod());
+                writeStrings(capability.getSelectors());
+            }
+            Set<ProvidedScriptCapability> scripts = capabilities.getProvidedScriptCapabilities();
+            writeNumber(scripts.size());
+            for (ProvidedScriptCapability capability : scripts) {
+                writeString(capability.getPath());
+                writeString(capability.getScriptExtension());
+                writeString(capability.getScriptEngine());
+            }
+            Set<RequiredResourceTypeCapability> required = capabilities.getRequiredResourceTypeCapabilities();
+            writeNumber(required.size());
+            for (RequiredResourceTypeCapability capability : required) {
+                writeString(capability.getResourceType());
+                VersionRange versionRange = capability.getVersionRange();
+                writeString(versionRange == null ? null : versionRange.toString());
+                output.writeBoolean(capability.isOptional());
+            }
+        }
+
+        private void writeStrings(@NotNull Iterable<String> values) throws IOException {
+            int size = 0;
+            for (String ignored : values) {
+                size++;
+            }
+            writeNumber(size);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * Writes {@code 0} for {@code null}, {@code 1} followed by the UTF-8 bytes for a new string, or the index of an already
+         * written string plus {@code 2}.
+         */
+        private void writeString(@Nullable String value) throws IOException {
+            if (value == null) {
+                writeNumber(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeNumber(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeNumber(1);
+            writeNumber(bytes.length);
+            output.write(bytes);
+        }
+
+        private void writeNumber(int number) throws IOException {
+            int value = number;
+            while ((value & ~0x7F) != 0) {
+                output.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output.writeByte(value);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream input;
+        private final List<String> strings = new ArrayList<>();
+
+        private Reader(@NotNull DataInputStream input) {
+            this.input = input;
+        }
+
+        @NotNull
+        private Capabilities readCapabilities() throws IOException {
+            int providedCount = readNumber();
+            Set<ProvidedResourceTypeCapability> provided = new LinkedHashSet<>();
+            for (int i = 0; i < providedCount; i++) {
+                Set<String> resourceTypes = new LinkedHashSet<>(readStrings());
+                ProvidedResourceTypeCapability.Builder builder =
+                        ProvidedResourceTypeCapability.builder().withResourceTypes(resourceTypes);
+                builder.withScriptEngine(readString())
+                        .withScriptExtension(readString())
+                        .withExtendsResourceType(readString());
+                String version = readString();
+                builder.withVersion(version == null ? null : Version.parseVersion(version))
+                        .withRequestExtension(readString())
+                        .withRequestMethod(readString())
+                        .withSelectors(readStrings());
+                provided.add(builder.build());
+            }
+            int scriptCount = readNumber();
+            Set<ProvidedScriptCapability> scripts = new LinkedHashSet<>();
+            for (int i = 0; i < scriptCount; i++) {
+                String path = readRequiredString();
+                String scriptExtension = readRequiredString();
+                String scriptEngine = readRequiredString();
+                scripts.add(ProvidedScriptCapability.builder(Collections.singletonMap(scriptExtension, scriptEngine))
+                        .withPath(path)
+                        .build());
+            }
+            int requiredCount = readNumber();
+            Set<RequiredResourceTypeCapability> required = new LinkedHashSet<>();
+            for (int i = 0; i < requiredCount; i++) {
+                RequiredResourceTypeCapability.Builder builder =
+                        RequiredResourceTypeCapability.builder().withResourceType(readRequiredString());
+                String versionRange = readString();
+                if (versionRange != null) {
+                    builder.withVersionRange(new VersionRange(versionRange));
+                }
+                if (input.readBoolean()) {
+                    builder.withIsOptional();
+                }
+                required.add(builder.build());
+            }
+            return new Capabilities(provided, scripts, required);
+        }
+
+        @NotNull
+        private List<String> readStrings() throws IOException {
+            int size = readNumber();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readRequiredString());
+            }
+            return values;
+        }
+
+        @NotNull
+        private String readRequiredString() throws IOException {
+            String value = readString();
+            if (value == null) {
+                throw new IOException("Unexpected null value.");
+            }
+            return value;
+        }
+
+        @Nullable
+        private String readString() throws IOException {
+            int reference = readNumber();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference == 1) {
+                byte[] bytes = new byte[readNumber()];
+                input.readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+            int index = reference - 2;
+            if (index >= strings.size()) {
+                throw new IOException(String.format("Invalid string reference %d.", index));
+            }
+            return strings.get(index);
+        }
+
+        private int readNumber() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+                int b = input.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new IOException("Invalid number.");
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Invalid number.");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes a 128-bit fingerprint of the analysis inputs: the relative path, size and content of every analysed file, together with
+ * the configuration values which influence the analysis. The fingerprint is meant to detect changes between two builds, not to
+ * resist tampering, so it is computed with a fast non-cryptographic hash, mixing 8 bytes at a time. Large files are read through a
+ * memory mapping, while small files, which are the vast majority of scripts, are read into a reused buffer.
+ */
+public final class InputFingerprint {
+
+    private static final int MAPPING_THRESHOLD = 64 * 1024;
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+
+    private long first = PRIME_1;
+    private long second = PRIME_2;
+    private long length;
+    private ByteBuffer buffer;
+
+    /**
+     * Adds a configuration value to the fingerprint.
+     *
+     * @param name  the configuration name
+     * @param value the value; collections and maps have to be passed with a stable iteration order
+     * @return this fingerprint
+     */
+    @NotNull
+    public InputFingerprint addProperty(@NotNull String name, @Nullable Object value) {
+        add(name);
+        if (value == null) {
+            add(-1L);
+        } else {
+            add(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Adds files to the fingerprint, in the iteration order of the map.
+     *
+     * @param files a map where the keys are paths relative to the analysed tree and the values are the files to read
+     * @return this fingerprint
+     * @throws IOException if one of the files cannot be read
+     */
+    @NotNull
+    public InputFingerprint addFiles(@NotNull Map<Path, Path> files) throws IOException {
+        add(files.size());
+        for (Map.Entry<Path, Path> file : files.entrySet()) {
+            add(FilenameUtils.separatorsToUnix(file.getKey().toString()));
+            addContent(file.getValue());
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        long firstHash = finish(first ^ length);
+        long secondHash = finish(second + length * PRIME_3);
+        return String.format("%016x%016x", firstHash, secondHash);
+    }
+
+    private void addContent(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            add(size);
+            ByteBuffer content;
+            if (size >= MAPPING_THRESHOLD) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(MAPPING_THRESHOLD);
+                }
+                buffer.clear().limit((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException(String.format("File %s was truncated while being read.", file));
+                    }
+                }
+                buffer.flip();
+                content = buffer;
+            }
+            add(content.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private void add(@NotNull ByteBuffer content) {
+        while (content.remaining() >= Long.BYTES) {
+            add(content.getLong());
+        }
+        long tail = 0;
+        int shift = 0;
+        while (content.hasRemaining()) {
+            tail |= (content.get() & 0xFFL) << shift;
+            shift += Byte.SIZE;
+        }
+        add(tail);
+    }
+
+    private void add(@NotNull String value) {
+        int valueLength = value.length();
+        add(valueLength);
+        int i = 0;
+        for (; i + 4 <= valueLength; i += 4) {
+            add(((long) value.charAt(i) << 48)
+                    | ((long) value.charAt(i + 1) << 32)
+                    | ((long) value.charAt(i + 2) << 16)
+                    | value.charAt(i + 3));
+        }
+        long tail = 0;
+        for (; i < valueLength; i++) {
+            tail = (tail << 16) | value.charAt(i);
+        }
+        add(tail);
+    }
+
+    private void add(long word) {
+        first = Long.rotateLeft(first ^ (word * PRIME_2), 31) * PRIME_1 + PRIME_4;
+        second = Long.rotateLeft(second + (word * PRIME_3), 27) * PRIME_4 ^ PRIME_1;
+        length++;
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.sling.scriptingbundle.plugin.processor.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records the size, the last modification time and the content digest of every source file which was copied into the working
+ * directory, together with the last modification time of the copy. Each file is stored on its own line, as tab separated values,
+ * the last value being the path relative to the working directory.
+ */
+class WorkDirectoryManifest {
+
+    private static final String HEADER = "# scriptingbundle-maven-plugin working directory manifest v2";
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    @Nullable
+    Entry get(@NotNull String relativePath) {
+        return entries.get(relativePath);
+    }
+
+    void put(@NotNull String relativePath, @NotNull Entry entry) {
+        entries.put(relativePath, entry);
+    }
+
+    void remove(@NotNull String relativePath) {
+        entries.remove(relativePath);
+    }
+
+    void write(@NotNull Path manifestFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(String.format(
+                        "%d\t%d\t%d\t%s\t%s",
+                        value.getSize(),
+                        value.getLastModified(),
+                        value.getTargetLastModified(),
+                        value.getDigest(),
+                        entry.getKey()));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a manifest previously written with {@link #write(Path)}. A missing or unreadable manifest results in an empty one,
+     * which means that all the source files will be copied again.
+     *
+     * @param manifestFile the manifest file
+     * @param logger       the logger
+     * @return the manifest
+     */
+    @NotNull
+    static WorkDirectoryManifest read(@NotNull Path manifestFile, @NotNull Logger logger) {
+        WorkDirectoryManifest manifest = new WorkDirectoryManifest();
+        if (Files.isRegularFile(manifestFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+                if (!HEADER.equals(reader.readLine())) {
+                    logger.debug(
+                            String.format("Ignoring manifest %s written by a different plugin version.", manifestFile));
+                    return manifest;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] values = line.split("\t", 5);
+                    if (values.length != 5) {
+                        throw new IOException(String.format("Invalid manifest line: %s.", line));
+                    }
+                    manifest.put(
+                            values[4],
+                            new Entry(
+                                    Long.parseLong(values[0]),
+                                    Long.parseLong(values[1]),
+                                    Long.parseLong(values[2]),
+                                    values[3]));
+                }
+            } catch (IOException | NumberFormatException e) {
+                logger.warn(
+                        String.format(
+                                "Unable to read manifest %s; the working directory will be rebuilt.", manifestFile),
+                        e);
+                return new WorkDirectoryManifest();
+            }
+        }
+        return manifest;
+    }
+
+    static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long targetLastModified;
+        private final String digest;
+
+        Entry(long size, long lastModified, long targetLastModified, @NotNull String digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.targetLastModified = targetLastModified;
+            this.digest = digest;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        long getTargetLastModified() {
+            return targetLastModified;
+        }
+
+        @NotNull
+        String getDigest() {
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.sling.scriptingbundle.plugin.processor.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the plugin's working directory in sync with the configured source directories. Instead of copying every source file on
+ * each build, the synchronizer compares the sources with a {@link WorkDirectoryManifest} recorded during the previous run and only
+ * copies the files which are new or whose content changed. Files from the working directory which no longer have a source are
+ * removed.
+ * <p>
+ * The files are processed by a bounded pool of worker threads, since copying many small files is latency bound rather than
+ * bandwidth bound. Failures do not stop the other copies: each failed file is logged, left out of the working directory and
+ * reported through the {@link Result}, so that the files which were synchronised can still be analysed.
+ */
+public class WorkDirectorySynchronizer {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final Path workDirectory;
+    private final Path manifestFile;
+    private final Logger logger;
+    private final int parallelism;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    public WorkDirectorySynchronizer(@NotNull Path workDirectory, @NotNull Logger logger) {
+        this(workDirectory, logger, 1);
+    }
+
+    /**
+     * Creates a synchronizer which copies up to {@code parallelism} files at the same time.
+     *
+     * @param workDirectory the working directory
+     * @param logger        the logger
+     * @param parallelism   the maximum number of concurrent copies; values lower than {@code 1} select the number of available
+     *                      processors
+     */
+    public WorkDirectorySynchronizer(@NotNull Path workDirectory, @NotNull Logger logger, int parallelism) {
+        this.workDirectory = workDirectory;
+        this.manifestFile = Paths.get(workDirectory + ".manifest");
+        this.logger = logger;
+        this.parallelism = parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    /**
+     * Synchronises the working directory with the given source files.
+     *
+     * @param files a map where the keys are paths relative to the working directory and the values are the source files that have
+     *              to be available under those paths
+     * @return the synchronisation statistics, together with the files which could not be copied
+     * @throws IOException if the working directory or its manifest cannot be accessed
+     */
+    @NotNull
+    public Result synchronize(@NotNull Map<Path, Path> files) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(workDirectory);
+        createdDirectories.add(workDirectory);
+        WorkDirectoryManifest previous = WorkDirectoryManifest.read(manifestFile, logger);
+        WorkDirectoryManifest current = new WorkDirectoryManifest();
+        Copies copies = copy(files, previous, current);
+        Set<String> expected = new HashSet<>();
+        for (Path relativePath : files.keySet()) {
+            if (!copies.failures.containsKey(relativePath)) {
+                expected.add(toKey(relativePath));
+            }
+        }
+        // a failed file is not kept in the working directory, not even as a stale or partial copy
+        int removed = removeStaleFiles(expected);
+        current.write(manifestFile);
+        return getResult(copies, removed, start);
+    }
+
+    /**
+     * Updates the working directory with the source files which changed since the previous synchronisation, without looking at
+     * the other files. This is meant for incremental builds, where the changed files are already known.
+     *
+     * @param files        a map where the keys are paths relative to the working directory and the values are the source files
+     *                     which were created or modified
+     * @param deletedFiles the paths, relative to the working directory, of the files which do not have a source any more
+     * @return the synchronisation statistics, together with the files which could not be copied
+     * @throws IOException if the working directory or its manifest cannot be accessed
+     */
+    @NotNull
+    public Result update(@NotNull Map<Path, Path> files, @NotNull Collection<Path> deletedFiles) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(workDirectory);
+        createdDirectories.add(workDirectory);
+        WorkDirectoryManifest manifest = WorkDirectoryManifest.read(manifestFile, logger);
+        Copies copies = copy(files, manifest, manifest);
+        Set<Path> removedFiles = new LinkedHashSet<>(deletedFiles);
+        removedFiles.addAll(copies.failures.keySet());
+        int removed = 0;
+        for (Path relativePath : removedFiles) {
+            manifest.remove(toKey(relativePath));
+            if (removeFile(workDirectory.resolve(relativePath))) {
+                removed++;
+            }
+        }
+        manifest.write(manifestFile);
+        return getResult(copies, removed, start);
+    }
+
+    @NotNull
+    private Copies copy(
+            @NotNull Map<Path, Path> files,
+            @NotNull WorkDirectoryManifest previous,
+            @NotNull WorkDirectoryManifest current)
+            throws IOException {
+        List<Path> relativePaths = new ArrayList<>(files.size());
+        List<Callable<FileState>> tasks = new ArrayList<>(files.size());
+        for (Map.Entry<Path, Path> file : files.entrySet()) {
+            String key = toKey(file.getKey());
+            Path source = file.getValue();
+            Path target = workDirectory.resolve(file.getKey());
+            WorkDirectoryManifest.Entry previousEntry = previous.get(key);
+            relativePaths.add(file.getKey());
+            tasks.add(() -> synchronizeFile(key, source, target, previousEntry));
+        }
+        Copies copies = new Copies();
+        List<Future<FileState>> futures = execute(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            Future<FileState> future = futures.get(i);
+            try {
+                FileState state = future.get();
+                current.put(state.key, state.entry);
+                if (state.copied) {
+                    copies.copied++;
+                    copies.copiedBytes += state.entry.getSize();
+                } else {
+                    copies.unchanged++;
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    Path relativePath = relativePaths.get(i);
+                    copies.failures.put(relativePath, (IOException) cause);
+                    logger.error(
+                            String.format("Cannot copy file %s into working directory.", files.get(relativePath)),
+                            cause.getCause() == null ? cause : cause.getCause());
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new IllegalStateException(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while synchronising the working directory.");
+            }
+        }
+        return copies;
+    }
+
+    @NotNull
+    private Result getResult(@NotNull Copies copies, int removed, long start) {
+        Result result = new Result(
+                copies.copied,
+                copies.unchanged,
+                removed,
+                copies.copiedBytes,
+                (System.nanoTime() - start) / 1_000_000L,
+                copies.failures);
+        logger.info(String.format("Synchronised working directory %s: %s.", workDirectory, result));
+        return result;
+    }
+
+    @NotNull
+    private List<Future<FileState>> execute(@NotNull List<Callable<FileState>> tasks) throws IOException {
+        if (parallelism == 1 || tasks.size() < 2) {
+            List<Future<FileState>> futures = new ArrayList<>(tasks.size());
+            for (Callable<FileState> task : tasks) {
+                FutureTask<FileState> futureTask = new FutureTask<>(task);
+                futureTask.run();
+                futures.add(futureTask);
+            }
+            return futures;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), runnable -> {
+            Thread thread = new Thread(runnable, "scriptingbundle-working-directory-copy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while synchronising the working directory.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private FileState synchronizeFile(
+            @NotNull String key,
+            @NotNull Path source,
+            @NotNull Path target,
+            @Nullable WorkDirectoryManifest.Entry previousEntry)
+            throws IOException {
+        try {
+            BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+            long size = sourceAttributes.size();
+            long lastModified = sourceAttributes.lastModifiedTime().toMillis();
+            if (previousEntry != null && previousEntry.getSize() == size) {
+                OptionalLong copyLastModified = getCopyLastModified(target, previousEntry);
+                if (copyLastModified.isPresent()
+                        && (previousEntry.getLastModified() == lastModified
+                                || previousEntry.getDigest().equals(digest(source)))) {
+                    // the source is unchanged, or only its timestamp changed; keep the working copy untouched
+                    return new FileState(
+                            key,
+                            new WorkDirectoryManifest.Entry(
+                                    size, lastModified, copyLastModified.getAsLong(), previousEntry.getDigest()),
+                            false);
+                }
+            }
+            String digest = copy(source, target);
+            long copyLastModified = Files.getLastModifiedTime(target).toMillis();
+            return new FileState(
+                    key, new WorkDirectoryManifest.Entry(size, lastModified, copyLastModified, digest), true);
+        } catch (IOException e) {
+            throw new IOException(String.format("Cannot copy file %s into working directory.", source), e);
+        }
+    }
+
+    /**
+     * Checks if the working copy still has the content it had when it was copied, returning its last modification time if it does.
+     * A copy whose timestamp differs from the recorded one, e.g. because it was edited in place, is digested again.
+     */
+    @NotNull
+    private OptionalLong getCopyLastModified(@NotNull Path target, @NotNull WorkDirectoryManifest.Entry entry)
+            throws IOException {
+        if (!Files.isRegularFile(target)) {
+            return OptionalLong.empty();
+        }
+        BasicFileAttributes targetAttributes = Files.readAttributes(target, BasicFileAttributes.class);
+        if (targetAttributes.size() != entry.getSize()) {
+            return OptionalLong.empty();
+        }
+        long targetLastModified = targetAttributes.lastModifiedTime().toMillis();
+        if (targetLastModified == entry.getTargetLastModified()
+                || entry.getDigest().equals(digest(target))) {
+            return OptionalLong.of(targetLastModified);
+        }
+        return OptionalLong.empty();
+    }
+
+    @NotNull
+    private String copy(@NotNull Path source, @NotNull Path target) throws IOException {
+        Path parent = target.getParent();
+        if (parent != null && !createdDirectories.contains(parent)) {
+            Files.createDirectories(parent);
+            createdDirectories.add(parent);
+        }
+        MessageDigest messageDigest = newMessageDigest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(source), messageDigest)) {
+            Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    @NotNull
+    private String digest(@NotNull Path file) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    private int removeStaleFiles(@NotNull Set<String> expected) throws IOException {
+        int[] removed = new int[1];
+        Files.walkFileTree(workDirectory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!expected.contains(toKey(workDirectory.relativize(file)))) {
+                    Files.delete(file);
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                if (!dir.equals(workDirectory)) {
+                    try (Stream<Path> children = Files.list(dir)) {
+                        if (children.findAny().isEmpty()) {
+                            Files.delete(dir);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return removed[0];
+    }
+
+    /**
+     * Deletes a file from the working directory, together with the folders which become empty.
+     */
+    private boolean removeFile(@NotNull Path file) throws IOException {
+        boolean removed = Files.deleteIfExists(file);
+        Path folder = file.getParent();
+        while (folder != null && !folder.equals(workDirectory) && folder.startsWith(workDirectory)) {
+            try (Stream<Path> children = Files.list(folder)) {
+                if (children.findAny().isPresent()) {
+                    break;
+                }
+            } catch (NoSuchFileException e) {
+                folder = folder.getParent();
+                continue;
+            }
+            Files.delete(folder);
+            createdDirectories.remove(folder);
+            folder = folder.getParent();
+        }
+        return removed;
+    }
+
+    @NotNull
+    private static String toKey(@NotNull Path relativePath) {
+        return FilenameUtils.separatorsToUnix(relativePath.toString());
+    }
+
+    @NotNull
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("The %s algorithm is not available.", DIGEST_ALGORITHM), e);
+        }
+    }
+
+    @NotNull
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Copies {
+        private final Map<Path, IOException> failures = new LinkedHashMap<>();
+        private int copied;
+        private int unchanged;
+        private long copiedBytes;
+    }
+
+    private static final class FileState {
+        private final String key;
+        private final WorkDirectoryManifest.Entry entry;
+        private final boolean copied;
+
+        private FileState(@NotNull String key, @NotNull WorkDirectoryManifest.Entry entry, boolean copied) {
+            this.key = key;
+            this.entry = entry;
+            this.copied = copied;
+        }
+    }
+
+    /**
+     * Provides statistics about a {@link #synchronize(Map)} or {@link #update(Map, Collection)} run.
+     */
+    public static final class Result {
+        private final int copied;
+        private final int unchanged;
+        private final int removed;
+        private final long copiedBytes;
+        private final long durationMillis;
+        private final Map<Path, IOException> failures;
+
+        Result(
+                int copied,
+                int unchanged,
+                int removed,
+                long copiedBytes,
+                long durationMillis,
+                @NotNull Map<Path, IOException> failures) {
+            this.copied = copied;
+            this.unchanged = unchanged;
+            this.removed = removed;
+            this.copiedBytes = copiedBytes;
+            this.durationMillis = durationMillis;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public int getCopied() {
+            return copied;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * Returns the files which could not be copied into the working directory.
+         *
+         * @return a map where the keys are the paths relative to the working directory, as passed to {@link #synchronize(Map)}, and
+         * the values are the reasons why the files could not be copied
+         */
+        @NotNull
+        public Map<Path, IOException> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the number of files which were either copied or found to be up to date, per second.
+         *
+         * @return the synchronisation throughput, in files per second
+         */
+        public double getFilesPerSecond() {
+            return (copied + unchanged) * 1000d / Math.max(durationMillis, 1L);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d copied (%d bytes), %d unchanged, %d removed, %d failed in %d ms (%.1f files/s)",
+                    copied, copiedBytes, unchanged, removed, failures.size(), durationMillis, getFilesPerSecond());
+        }
+    }
+}
@@ -19,7 +19,9 @@
 package org.apache.sling.scriptingbundle.plugin;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -43,7 +45,12 @@ import static org.junit.Assert.fail;
 public abstract class AbstractPluginTest {
 
     protected final void cleanUp(Path workDirectory) throws IOException {
-        PathUtils.deleteDirectory(workDirectory);
+        if (Files.exists(workDirectory)) {
+            PathUtils.deleteDirectory(workDirectory);
+        }
+        // the analysis cache and the working copy manifest are stored next to the work directory
+        Files.deleteIfExists(Paths.get(workDirectory + ".capabilities"));
+        Files.deleteIfExists(Paths.get(workDirectory + ".manifest"));
     }
 
     protected static void assertTestProject1(Capabilities capabilities, Map<String, String> scriptEngineMappings) {
@@ -55,7 +55,9 @@ class BundledScriptsScannerPluginTest extends AbstractPluginTest {
                 arguments("project-3", (Verifications) AbstractPluginTest::assertTestProject3, null),
                 arguments("project-4", (Verifications) AbstractPluginTest::assertTestProject4, null),
                 arguments("filevault-1", (Verifications) AbstractPluginTest::assertTestFileVault1, (Consumer<Builder>)
-                        b -> b.set("project.packaging", "content-package")));
+                        b -> b.set("project.packaging", "content-package")),
+                arguments("project-2", (Verifications) AbstractPluginTest::assertTestProject2, (Consumer<Builder>)
+                        b -> b.set("-plugin", b.get("-plugin") + "; inPlaceAnalysis=true")));
     }
 
     @ParameterizedTest
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.bnd;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.scriptingbundle.plugin.processor.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledGlobMatcherTest {
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/project/src/main/scripts/org/example/example.html",
+            "/project/src/main/scripts/org/example/.git",
+            "/project/src/main/scripts/org/example/.git/HEAD",
+            "/project/src/main/scripts/org/example/CVS/Root",
+            "/project/src/main/scripts/org/example/example.html~",
+            "/project/src/main/scripts/org/example/#example.html#",
+            "/project/src/main/scripts/org/example/._example.html",
+            "/project/src/main/scripts/org/example/selector/GET.jsp",
+            "/project/src/main/scripts/org/example/a,b.html",
+            "/project/src/main/scripts/org/example/1.0.0/example.html");
+
+    @Test
+    public void testDefaultExcludesMatchLikeThePathMatchers() {
+        assertSameMatches(Constants.DEFAULT_EXCLUDES);
+    }
+
+    @Test
+    public void testGlobSyntaxMatchesLikeThePathMatchers() {
+        assertSameMatches(Arrays.asList("**/*.{html,jsp}"));
+        assertSameMatches(Arrays.asList("**/org/*/example.html"));
+        assertSameMatches(Arrays.asList("**/[!.]*"));
+        assertSameMatches(Arrays.asList("**/?.?.?/**"));
+        assertSameMatches(Arrays.asList("**/a\\,b.html"));
+        assertSameMatches(Arrays.asList("**/selector/**", "**/*~"));
+    }
+
+    @Test
+    public void testSubtreeMatches() {
+        CompiledGlobMatcher matcher = CompiledGlobMatcher.compile(Arrays.asList("**/.git/**", "**/*.html"));
+        Assert.assertTrue(matcher.matchesSubtree(Paths.get("/project/src/main/scripts/.git")));
+        Assert.assertFalse(matcher.matchesSubtree(Paths.get("/project/src/main/scripts")));
+    }
+
+    @Test
+    public void testEmptyMatcher() {
+        CompiledGlobMatcher matcher = CompiledGlobMatcher.compile(Collections.emptyList());
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matches(Paths.get(PATHS.get(0))));
+        Assert.assertFalse(matcher.matchesSubtree(Paths.get(PATHS.get(0))));
+    }
+
+    private static void assertSameMatches(Collection<String> globs) {
+        CompiledGlobMatcher matcher = CompiledGlobMatcher.compile(globs);
+        for (String pathString : PATHS) {
+            Path path = Paths.get(pathString);
+            boolean expected = globs.stream()
+                    .map(glob -> FileSystems.getDefault().getPathMatcher(BundledScriptsScannerPlugin.GLOB + glob))
+                    .anyMatch((PathMatcher pathMatcher) -> pathMatcher.matches(path));
+            Assert.assertEquals(String.format("%s with %s", pathString, globs), expected, matcher.matches(path));
+        }
+    }
+}
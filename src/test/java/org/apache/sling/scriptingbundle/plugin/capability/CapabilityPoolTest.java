@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+public class CapabilityPoolTest {
+
+    @Test
+    public void testPooledCapabilitiesShareResourceTypesAndSelectors() {
+        CapabilityPool pool = new CapabilityPool();
+        ProvidedResourceTypeCapability first = ProvidedResourceTypeCapability.builder(pool)
+                .withResourceTypes(new HashSet<>(Arrays.asList("my/resource", "/apps/my/resource")))
+                .withSelectors(Arrays.asList("a", "b"))
+                .withScriptEngine(new String("htl"))
+                .build();
+        ProvidedResourceTypeCapability second = ProvidedResourceTypeCapability.builder(pool)
+                .withResourceTypes(new HashSet<>(Arrays.asList("my/resource", "/apps/my/resource")))
+                .withSelectors(Arrays.asList("a", "b"))
+                .withScriptEngine(new String("htl"))
+                .withRequestMethod("GET")
+                .build();
+        Assert.assertSame(first.getResourceTypes(), second.getResourceTypes());
+        Assert.assertSame(first.getSelectors(), second.getSelectors());
+        Assert.assertSame(first.getScriptEngine(), second.getScriptEngine());
+    }
+
+    @Test
+    public void testResourceTypesOrderIsKept() {
+        CapabilityPool pool = new CapabilityPool();
+        ProvidedResourceTypeCapability first = ProvidedResourceTypeCapability.builder(pool)
+                .withResourceTypes(new LinkedHashSet<>(Arrays.asList("a", "/apps/a")))
+                .build();
+        ProvidedResourceTypeCapability second = ProvidedResourceTypeCapability.builder(pool)
+                .withResourceTypes(new LinkedHashSet<>(Arrays.asList("/apps/a", "a")))
+                .build();
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(
+                Arrays.asList("a", "/apps/a"),
+                Arrays.asList(first.getResourceTypes().toArray()));
+        Assert.assertEquals(
+                Arrays.asList("/apps/a", "a"),
+                Arrays.asList(second.getResourceTypes().toArray()));
+    }
+
+    @Test
+    public void testHashCodes() {
+        CapabilityPool pool = new CapabilityPool();
+        ProvidedResourceTypeCapability provided = ProvidedResourceTypeCapability.builder(pool)
+                .withResourceTypes("a", "/apps/a")
+                .withVersion(new Version("1.0.0"))
+                .withSelectors("s")
+                .withRequestExtension("html")
+                .withRequestMethod("GET")
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .withExtendsResourceType("b")
+                .build();
+        Assert.assertEquals(
+                Objects.hash(
+                        provided.getResourceTypes(),
+                        provided.getScriptEngine(),
+                        provided.getScriptExtension(),
+                        provided.getVersion(),
+                        provided.getRequestExtension(),
+                        provided.getExtendsResourceType(),
+                        provided.getRequestMethod(),
+                        provided.getSelectors()),
+                provided.hashCode());
+        RequiredResourceTypeCapability required = RequiredResourceTypeCapability.builder(pool)
+                .withResourceType("a")
+                .withVersionRange(new VersionRange("[1.0.0,2.0.0)"))
+                .withIsOptional()
+                .build();
+        Assert.assertEquals(
+                Objects.hash(required.getResourceType(), required.getVersionRange(), required.isOptional()),
+                required.hashCode());
+    }
+
+    @Test
+    public void testBuilderDoesNotModifySharedResourceTypes() {
+        ProvidedResourceTypeCapability capability =
+                ProvidedResourceTypeCapability.builder().withResourceTypes("a").build();
+        ProvidedResourceTypeCapability extended = ProvidedResourceTypeCapability.builder()
+                .fromCapability(capability)
+                .withResourceType("/apps/a")
+                .build();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a")), capability.getResourceTypes());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "/apps/a")), extended.getResourceTypes());
+    }
+}
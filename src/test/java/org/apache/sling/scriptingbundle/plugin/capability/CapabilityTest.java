@@ -22,6 +22,10 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.header.Parameters;
+import org.apache.sling.scriptingbundle.plugin.processor.Constants;
 import org.junit.Assert;
 import org.junit.Test;
 import org.osgi.framework.Version;
@@ -63,4 +67,124 @@ public class CapabilityTest {
                         + ",sling.servlet;filter:=\"(&(!(sling.servlet.selectors=*))(sling.servlet.resourceTypes=/other/type))\"";
         Assert.assertEquals(expectedHeaderValue, caps.getRequiredCapabilitiesString());
     }
+
+    @Test
+    public void testProvidedCapabilitiesStringMatchesBnd() {
+        Set<ProvidedResourceTypeCapability> resourceTypeCaps = new LinkedHashSet<>();
+        resourceTypeCaps.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("single")
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .build());
+        resourceTypeCaps.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("my/type", "/apps/my/type", "with,comma", "with\\backslash", "with\"quote")
+                .withVersion(new Version("1.2.3.qualifier"))
+                .withExtendsResourceType("\"quoted\"")
+                .withRequestMethod("GET")
+                .withRequestExtension("with space")
+                .withSelectors("a", "b,c", "-")
+                .withScriptEngine("java script")
+                .withScriptExtension("js")
+                .build());
+        resourceTypeCaps.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("\\\"")
+                .withExtendsResourceType("\\\"")
+                .build());
+        Set<ProvidedScriptCapability> scriptCaps = new LinkedHashSet<>();
+        scriptCaps.add(ProvidedScriptCapability.builder(Collections.singletonMap("html", "htl"))
+                .withPath("/apps/my/type/script.html")
+                .build());
+        Capabilities caps = new Capabilities(resourceTypeCaps, scriptCaps, Collections.emptySet());
+
+        Parameters parameters = new Parameters();
+        for (ProvidedResourceTypeCapability capability : resourceTypeCaps) {
+            Attrs attributes = new Attrs();
+            attributes.putTyped(Constants.CAPABILITY_RESOURCE_TYPE_AT, capability.getResourceTypes());
+            if (capability.getScriptEngine() != null) {
+                attributes.put(Constants.CAPABILITY_SCRIPT_ENGINE_AT, capability.getScriptEngine());
+            }
+            if (capability.getScriptExtension() != null) {
+                attributes.put(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, capability.getScriptExtension());
+            }
+            if (capability.getVersion() != null) {
+                attributes.putTyped(
+                        Constants.CAPABILITY_VERSION_AT,
+                        new aQute.bnd.version.Version(capability.getVersion().toString()));
+            }
+            if (capability.getExtendsResourceType() != null) {
+                attributes.put(Constants.CAPABILITY_EXTENDS_AT, capability.getExtendsResourceType());
+            }
+            if (capability.getRequestMethod() != null) {
+                attributes.put(Constants.CAPABILITY_METHODS_AT, capability.getRequestMethod());
+            }
+            if (capability.getRequestExtension() != null) {
+                attributes.put(Constants.CAPABILITY_EXTENSIONS_AT, capability.getRequestExtension());
+            }
+            if (!capability.getSelectors().isEmpty()) {
+                attributes.putTyped(Constants.CAPABILITY_SELECTORS_AT, capability.getSelectors());
+            }
+            parameters.add(Constants.CAPABILITY_NS, attributes);
+        }
+        for (ProvidedScriptCapability capability : scriptCaps) {
+            Attrs attributes = new Attrs();
+            attributes.put(Constants.CAPABILITY_PATH_AT, capability.getPath());
+            attributes.put(Constants.CAPABILITY_SCRIPT_ENGINE_AT, capability.getScriptEngine());
+            attributes.put(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, capability.getScriptExtension());
+            parameters.add(Constants.CAPABILITY_NS, attributes);
+        }
+        Assert.assertEquals(parameters.toString(), caps.getProvidedCapabilitiesString());
+    }
+
+    @Test
+    public void testRequiredCapabilitiesStringMatchesBnd() {
+        Set<RequiredResourceTypeCapability> resourceTypeCaps = new LinkedHashSet<>();
+        resourceTypeCaps.add(RequiredResourceTypeCapability.builder()
+                .withResourceType("with\"quote")
+                .withVersionRange(new VersionRange("[1.0,1.0]"))
+                .build());
+        resourceTypeCaps.add(RequiredResourceTypeCapability.builder()
+                .withResourceType("with\\backslash,comma")
+                .withIsOptional()
+                .build());
+        Capabilities caps = new Capabilities(Collections.emptySet(), Collections.emptySet(), resourceTypeCaps);
+        String expectedHeaderValue =
+                "sling.servlet;filter:=\"(&(!(sling.servlet.selectors=*))(&(&(version>=1.0.0)(version<=1.0.0))(sling.servlet.resourceTypes=with\\\"quote)))\""
+                        + ",sling.servlet;filter:=\"(&(!(sling.servlet.selectors=*))(sling.servlet.resourceTypes=with\\\\backslash,comma))\";resolution:=optional";
+        Assert.assertEquals(expectedHeaderValue, caps.getRequiredCapabilitiesString());
+        Parameters parsed = OSGiHeader.parseHeader(caps.getRequiredCapabilitiesString());
+        Assert.assertEquals(parsed.toString(), caps.getRequiredCapabilitiesString());
+    }
+
+    @Test
+    public void testExistingHeader() {
+        Set<RequiredResourceTypeCapability> resourceTypeCaps = new LinkedHashSet<>();
+        resourceTypeCaps.add(RequiredResourceTypeCapability.builder()
+                .withResourceType("my/type")
+                .build());
+        Capabilities caps = new Capabilities(Collections.emptySet(), Collections.emptySet(), resourceTypeCaps);
+        Assert.assertEquals(
+                "osgi.ee;filter:=\"(osgi.ee=JavaSE)\","
+                        + "sling.servlet;filter:=\"(&(!(sling.servlet.selectors=*))(sling.servlet.resourceTypes=my/type))\"",
+                caps.getRequiredCapabilitiesString("osgi.ee;filter:=\"(osgi.ee=JavaSE)\""));
+        Assert.assertEquals(caps.getRequiredCapabilitiesString(), caps.getRequiredCapabilitiesString(""));
+    }
+
+    @Test
+    public void testExistingHeaderClauses() {
+        String existingHeader =
+                "osgi.ee;filter:=\"(osgi.ee=JavaSE)\", osgi.ee;filter:=\"(&(osgi.ee=JavaSE)(version=11))\","
+                        + " my.ns;version:Version=1.0;names:List<String>=\"a,b\";count:Long=2;plain=value, empty";
+        Set<ProvidedScriptCapability> scriptCaps = new LinkedHashSet<>();
+        scriptCaps.add(ProvidedScriptCapability.builder(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING)
+                .withPath("/apps/my/type/type.html")
+                .build());
+        Capabilities caps = new Capabilities(Collections.emptySet(), scriptCaps, Collections.emptySet());
+        Parameters expected = OSGiHeader.parseHeader(existingHeader);
+        Attrs attributes = new Attrs();
+        attributes.put(Constants.CAPABILITY_PATH_AT, "/apps/my/type/type.html");
+        attributes.put(Constants.CAPABILITY_SCRIPT_ENGINE_AT, "htl");
+        attributes.put(Constants.CAPABILITY_SCRIPT_EXTENSION_AT, "html");
+        expected.add(Constants.CAPABILITY_NS, attributes);
+        Assert.assertEquals(expected.toString(), caps.getProvidedCapabilitiesString(existingHeader));
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelPathAnalysisTest {
+
+    private static final int PATHS = 200;
+
+    @Test
+    public void testResultsInPathOrder() {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < PATHS; i++) {
+            paths.add(Paths.get("apps", "type" + i));
+        }
+        Function<Path, Capabilities> analyser = path -> new Capabilities(
+                Collections.singleton(ProvidedResourceTypeCapability.builder()
+                        .withResourceType(path.toString())
+                        .build()),
+                Collections.emptySet(),
+                Collections.emptySet());
+        Capabilities[] sequential = ParallelPathAnalysis.analyse(paths, analyser, 1);
+        Capabilities[] parallel = ParallelPathAnalysis.analyse(paths, analyser, 4);
+        Assert.assertEquals(PATHS, parallel.length);
+        for (int i = 0; i < PATHS; i++) {
+            Assert.assertEquals(
+                    sequential[i].getProvidedResourceTypeCapabilities(),
+                    parallel[i].getProvidedResourceTypeCapabilities());
+            Assert.assertEquals(
+                    paths.get(i).toString(),
+                    parallel[i]
+                            .getProvidedResourceTypeCapabilities()
+                            .iterator()
+                            .next()
+                            .getResourceTypes()
+                            .iterator()
+                            .next());
+        }
+    }
+
+    @Test
+    public void testFailureStopsAnalysis() {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < PATHS; i++) {
+            paths.add(Paths.get("apps", "type" + i));
+        }
+        UncheckedIOException failure = new UncheckedIOException(new IOException("failure"));
+        AtomicInteger analysed = new AtomicInteger();
+        try {
+            ParallelPathAnalysis.analyse(
+                    paths,
+                    path -> {
+                        analysed.incrementAndGet();
+                        throw failure;
+                    },
+                    4);
+            Assert.fail("Expected the analyser's exception.");
+        } catch (UncheckedIOException e) {
+            Assert.assertSame(failure, e);
+        }
+        Assert.assertTrue(analysed.get() < PATHS);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProvidedResourceTypeCapabilitiesTest {
+
+    private static final Set<String> RESOURCE_TYPES = new HashSet<>(Arrays.asList("my/type", "/apps/my/type"));
+
+    @Test
+    public void testLookupAndOrder() {
+        ProvidedResourceTypeCapabilities capabilities = new ProvidedResourceTypeCapabilities();
+        ProvidedResourceTypeCapability root = ProvidedResourceTypeCapability.builder()
+                .withResourceTypes(RESOURCE_TYPES)
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .build();
+        ProvidedResourceTypeCapability selector = ProvidedResourceTypeCapability.builder()
+                .withResourceTypes(RESOURCE_TYPES)
+                .withSelectors("selector")
+                .withRequestMethod("GET")
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .build();
+        capabilities.add(root);
+        capabilities.add(selector);
+
+        Assert.assertEquals(
+                Collections.singletonList(root),
+                new ArrayList<>(capabilities.get(RESOURCE_TYPES, Collections.emptyList(), "", null)));
+        Assert.assertEquals(
+                Collections.singletonList(selector),
+                new ArrayList<>(capabilities.get(RESOURCE_TYPES, Arrays.asList("selector"), "GET", null)));
+        Assert.assertTrue(capabilities
+                .get(RESOURCE_TYPES, Arrays.asList("selector"), null, null)
+                .isEmpty());
+
+        ProvidedResourceTypeCapability replacement = ProvidedResourceTypeCapability.builder()
+                .fromCapability(root)
+                .withExtendsResourceType("my/parent")
+                .build();
+        capabilities.remove(root);
+        capabilities.add(replacement);
+        Assert.assertEquals(Arrays.asList(selector, replacement), new ArrayList<>(capabilities));
+        Assert.assertEquals(
+                Collections.singletonList(replacement),
+                new ArrayList<>(capabilities.get(RESOURCE_TYPES, Collections.emptyList(), null, null)));
+    }
+
+    @Test
+    public void testIteratorRemovalUpdatesTheIndex() {
+        ProvidedResourceTypeCapabilities capabilities = new ProvidedResourceTypeCapabilities();
+        capabilities.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes(RESOURCE_TYPES)
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .build());
+        Iterator<ProvidedResourceTypeCapability> iterator = capabilities.iterator();
+        iterator.next();
+        iterator.remove();
+        Assert.assertTrue(capabilities.isEmpty());
+        Assert.assertTrue(capabilities
+                .get(RESOURCE_TYPES, Collections.emptyList(), null, null)
+                .isEmpty());
+    }
+}
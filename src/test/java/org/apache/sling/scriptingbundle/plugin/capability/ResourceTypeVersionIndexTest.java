@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.capability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+public class ResourceTypeVersionIndexTest {
+
+    @Test
+    public void testSameAnswersAsIsSatisfied() {
+        List<ProvidedResourceTypeCapability> provided = new ArrayList<>();
+        provided.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("a", "/apps/a")
+                .withVersion(new Version("1.0.0"))
+                .build());
+        provided.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("a", "/apps/a")
+                .withVersion(new Version("2.5.0"))
+                .build());
+        provided.add(
+                ProvidedResourceTypeCapability.builder().withResourceTypes("b").build());
+        provided.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("c")
+                .withSelectors("selector")
+                .withVersion(new Version("1.0.0"))
+                .build());
+        ResourceTypeVersionIndex index = new ResourceTypeVersionIndex(provided);
+
+        List<String> resourceTypes = Arrays.asList("a", "/apps/a", "b", "c", "d");
+        List<VersionRange> versionRanges = Arrays.asList(
+                null,
+                new VersionRange("1.0.0"),
+                new VersionRange("[1.0.0,2.0.0)"),
+                new VersionRange("(1.0.0,2.0.0)"),
+                new VersionRange("(1.0.0,2.5.0]"),
+                new VersionRange("(1.0.0,2.5.0)"),
+                new VersionRange("[3.0.0,4.0.0)"),
+                new VersionRange("[0.0.0,1.0.0]"));
+        for (String resourceType : resourceTypes) {
+            for (VersionRange versionRange : versionRanges) {
+                RequiredResourceTypeCapability required = RequiredResourceTypeCapability.builder()
+                        .withResourceType(resourceType)
+                        .withVersionRange(versionRange)
+                        .build();
+                boolean expected = provided.stream().anyMatch(required::isSatisfied);
+                Assert.assertEquals(required.toString(), expected, index.isSatisfied(required));
+            }
+        }
+    }
+}
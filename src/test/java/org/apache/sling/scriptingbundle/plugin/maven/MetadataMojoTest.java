@@ -18,18 +18,42 @@
  */
 package org.apache.sling.scriptingbundle.plugin.maven;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.google.inject.Inject;
+import org.apache.commons.io.file.PathUtils;
 import org.apache.maven.api.plugin.testing.Basedir;
 import org.apache.maven.api.plugin.testing.InjectMojo;
+import org.apache.maven.api.plugin.testing.MojoExtension;
+import org.apache.maven.api.plugin.testing.MojoParameter;
 import org.apache.maven.api.plugin.testing.MojoTest;
 import org.apache.maven.project.MavenProject;
 import org.apache.sling.scriptingbundle.plugin.AbstractPluginTest;
+import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.codehaus.plexus.util.Scanner;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @MojoTest
@@ -46,6 +70,145 @@ class MetadataMojoTest extends AbstractPluginTest {
         assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
     }
 
+    @Test
+    @Basedir("/project-1")
+    @InjectMojo(goal = "metadata")
+    @MojoParameter(name = "analysisCache", value = "false")
+    @MojoParameter(name = "analysisParallelism", value = "4")
+    void testProject1Parallel(MetadataMojo mojo) {
+        mojo.execute();
+        assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+    }
+
+    @Test
+    @Basedir("/project-1")
+    @InjectMojo(goal = "metadata")
+    void testProject1AnalysisCache(MetadataMojo mojo) throws IOException {
+        mojo.execute();
+        Path workDirectory = mavenProject.getBasedir().toPath().resolve("target/scriptingbundle-maven-plugin");
+        assertTrue(Files.exists(Paths.get(workDirectory + ".capabilities")));
+        // a cache hit skips synchronising the work directory
+        PathUtils.deleteDirectory(workDirectory);
+        mojo.execute();
+        assertFalse(Files.exists(workDirectory));
+        assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+    }
+
+    @Test
+    @Basedir("/project-1")
+    @InjectMojo(goal = "metadata")
+    @MojoParameter(name = "analysisCache", value = "false")
+    void testProject1Incremental(MetadataMojo mojo) throws IllegalAccessException {
+        BuildContext buildContext = mock(BuildContext.class);
+        Map<String, Object> values = new HashMap<>();
+        when(buildContext.isIncremental()).thenReturn(true);
+        when(buildContext.getValue(anyString())).thenAnswer(invocation -> values.get(invocation.getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(buildContext)
+                .setValue(anyString(), any());
+        MojoExtension.setVariableValueToObject(mojo, "buildContext", buildContext);
+
+        mojo.execute();
+        Capabilities capabilities = mojo.getCapabilities();
+        assertTestProject1(capabilities, mojo.getScriptEngineMappings());
+        verify(buildContext).refresh(any());
+
+        when(buildContext.hasDelta(any(File.class))).thenReturn(false);
+        mojo.execute();
+        assertSame(capabilities, mojo.getCapabilities());
+
+        Scanner changed = mock(Scanner.class);
+        when(changed.getIncludedFiles())
+                .thenReturn(
+                        new String[] {"org/apache/sling/bar/1.0.0/depth1/100.html".replace('/', File.separatorChar)});
+        when(changed.getIncludedDirectories()).thenReturn(new String[0]);
+        Scanner deleted = mock(Scanner.class);
+        when(deleted.getIncludedFiles()).thenReturn(new String[0]);
+        when(deleted.getIncludedDirectories()).thenReturn(new String[0]);
+        when(buildContext.hasDelta(any(File.class))).thenReturn(true);
+        when(buildContext.newScanner(any(File.class))).thenReturn(changed);
+        when(buildContext.newDeleteScanner(any(File.class))).thenReturn(deleted);
+        mojo.execute();
+        assertNotSame(capabilities, mojo.getCapabilities());
+        assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+    }
+
+    @Test
+    @Basedir("/project-1")
+    @InjectMojo(goal = "metadata")
+    void testProject1IncrementalChangesOnly(MetadataMojo mojo, @TempDir Path extraSources)
+            throws IllegalAccessException, IOException {
+        BuildContext buildContext = mock(BuildContext.class);
+        Map<String, Object> values = new HashMap<>();
+        when(buildContext.isIncremental()).thenReturn(true);
+        when(buildContext.getValue(anyString())).thenAnswer(invocation -> values.get(invocation.getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(buildContext)
+                .setValue(anyString(), any());
+        MojoExtension.setVariableValueToObject(mojo, "buildContext", buildContext);
+        MojoExtension.setVariableValueToObject(
+                mojo, "sourceDirectories", Arrays.asList("src/main/scripts", extraSources.toString()));
+        mojo.execute();
+        assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+        Path workDirectory = mavenProject.getBasedir().toPath().resolve("target/scriptingbundle-maven-plugin");
+        // incremental builds keep their state in the build context instead of the analysis cache
+        assertFalse(Files.exists(Paths.get(workDirectory + ".capabilities")));
+
+        String resourceType = "org/apache/sling/incremental";
+        Path script = extraSources.resolve(resourceType + "/incremental.html");
+        Files.createDirectories(script.getParent());
+        Files.write(script, "incremental".getBytes(StandardCharsets.UTF_8));
+        Scanner changed = mock(Scanner.class);
+        when(changed.getIncludedFiles()).thenReturn(new String[0]);
+        when(changed.getIncludedDirectories()).thenReturn(new String[0]);
+        Scanner deleted = mock(Scanner.class);
+        when(deleted.getIncludedFiles()).thenReturn(new String[0]);
+        when(deleted.getIncludedDirectories()).thenReturn(new String[0]);
+        when(buildContext.hasDelta(any(File.class))).thenReturn(true);
+        when(buildContext.newScanner(any(File.class))).thenReturn(changed);
+        when(buildContext.newDeleteScanner(any(File.class))).thenReturn(deleted);
+        // the source directories are not scanned again, so a file which is not reported by the build context is not
+        // seen
+        mojo.execute();
+        assertFalse(providesResourceType(mojo.getCapabilities(), resourceType));
+
+        when(changed.getIncludedFiles())
+                .thenReturn(new String[] {(resourceType + "/incremental.html").replace('/', File.separatorChar)});
+        mojo.execute();
+        assertTrue(providesResourceType(mojo.getCapabilities(), resourceType));
+        assertTrue(Files.isRegularFile(workDirectory.resolve(resourceType + "/incremental.html")));
+
+        Files.delete(script);
+        when(changed.getIncludedFiles()).thenReturn(new String[0]);
+        when(deleted.getIncludedDirectories()).thenReturn(new String[] {resourceType.replace('/', File.separatorChar)});
+        mojo.execute();
+        assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+        assertFalse(Files.exists(workDirectory.resolve(resourceType)));
+    }
+
+    @Test
+    @Basedir("/project-1")
+    @InjectMojo(goal = "metadata")
+    void testProject1UnreadableSourceFile(MetadataMojo mojo, @TempDir Path extraSources)
+            throws IllegalAccessException, IOException {
+        Path unreadable = extraSources.resolve("org/apache/sling/unreadable/unreadable.html");
+        Files.createDirectories(unreadable.getParent());
+        Files.write(unreadable, "unreadable".getBytes(StandardCharsets.UTF_8));
+        assumeTrue(unreadable.toFile().setReadable(false, false) && !Files.isReadable(unreadable));
+        MojoExtension.setVariableValueToObject(
+                mojo, "sourceDirectories", Arrays.asList("src/main/scripts", extraSources.toString()));
+        try {
+            mojo.execute();
+            // the unreadable file is skipped, while the other files are still analysed
+            assertTestProject1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+            Path workDirectory = mavenProject.getBasedir().toPath().resolve("target/scriptingbundle-maven-plugin");
+            assertFalse(Files.exists(workDirectory.resolve("org/apache/sling/unreadable/unreadable.html")));
+            assertFalse(Files.exists(Paths.get(workDirectory + ".capabilities")));
+        } finally {
+            unreadable.toFile().setReadable(true, false);
+        }
+    }
+
     @Test
     @Basedir("/project-2")
     @InjectMojo(goal = "metadata")
@@ -79,6 +242,42 @@ class MetadataMojoTest extends AbstractPluginTest {
         assertTestFileVault1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
     }
 
+    @Test
+    @Basedir("/filevault-1")
+    @InjectMojo(goal = "metadata")
+    @MojoParameter(name = "analysisCache", value = "false")
+    @MojoParameter(name = "prefetchConcurrency", value = "4")
+    void testFileVault1Prefetch(MetadataMojo mojo) {
+        when(mavenProject.getPackaging()).thenReturn("content-package");
+        mojo.execute();
+        assertTestFileVault1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+    }
+
+    @Test
+    @Basedir("/project-2")
+    @InjectMojo(goal = "metadata")
+    @MojoParameter(name = "inPlaceAnalysis", value = "true")
+    void testProject2InPlace(MetadataMojo mojo) {
+        mojo.execute();
+        assertTestProject2(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+        assertFalse(Files.exists(mavenProject.getBasedir().toPath().resolve("target/scriptingbundle-maven-plugin")));
+    }
+
+    @Test
+    @Basedir("/filevault-1")
+    @InjectMojo(goal = "metadata")
+    @MojoParameter(name = "inPlaceAnalysis", value = "true")
+    void testFileVault1InPlace(MetadataMojo mojo) {
+        when(mavenProject.getPackaging()).thenReturn("content-package");
+        mojo.execute();
+        assertTestFileVault1(mojo.getCapabilities(), mojo.getScriptEngineMappings());
+    }
+
+    private static boolean providesResourceType(Capabilities capabilities, String resourceType) {
+        return capabilities.getProvidedResourceTypeCapabilities().stream()
+                .anyMatch(capability -> capability.getResourceTypes().contains(resourceType));
+    }
+
     @AfterEach
     void cleanUp() throws IOException {
         Path workDir = mavenProject.getBasedir().toPath().resolve("target");
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnalysableFilePredicateTest {
+
+    @Test
+    public void testScriptsAndMetadataFilesAreAnalysable() {
+        AnalysableFilePredicate predicate =
+                new AnalysableFilePredicate(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING, true);
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", "example.html")));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", "selector", "GET.jsp")));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", Constants.EXTENDS_FILE)));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", Constants.REQUIRES_FILE)));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", ".content.xml")));
+    }
+
+    @Test
+    public void testAssetsAreNotAnalysable() {
+        AnalysableFilePredicate predicate =
+                new AnalysableFilePredicate(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING, true);
+        Assert.assertFalse(predicate.test(Paths.get("apps", "example", "example.png")));
+        Assert.assertFalse(predicate.test(Paths.get("apps", "example", "clientlib", "js.txt")));
+        Assert.assertFalse(predicate.test(Paths.get("apps", "example", "_cq_dialog", "config.json")));
+        Assert.assertFalse(predicate.test(Paths.get("apps", "example", "README")));
+    }
+
+    @Test
+    public void testAllFilesAreAnalysableOutsideOfContentPackages() {
+        AnalysableFilePredicate predicate =
+                new AnalysableFilePredicate(Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING, false);
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", "example.png")));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", "html.json")));
+        Assert.assertTrue(predicate.test(Paths.get("apps", "example", "README")));
+    }
+}
@@ -21,10 +21,13 @@ package org.apache.sling.scriptingbundle.plugin.processor;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.sling.api.resource.type.ResourceType;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapabilities;
 import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
 import org.apache.sling.scriptingbundle.plugin.capability.RequiredResourceTypeCapability;
 import org.junit.Assert;
@@ -35,7 +38,7 @@ import org.osgi.framework.VersionRange;
 public class FileProcessorTest {
 
     private FileProcessor processor;
-    Set<ProvidedResourceTypeCapability> providedCapabilities;
+    ProvidedResourceTypeCapabilities providedCapabilities;
     Set<RequiredResourceTypeCapability> requiredCapabilities;
     private static final ResourceType MY_RESOURCE_TYPE = ResourceType.parseResourceType("apps/my/resource");
 
@@ -45,7 +48,7 @@ public class FileProcessorTest {
                 new Slf4jLogger(),
                 Constants.DEFAULT_SEARCH_PATHS,
                 Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
-        providedCapabilities = new HashSet<>();
+        providedCapabilities = new ProvidedResourceTypeCapabilities();
         requiredCapabilities = new HashSet<>();
     }
 
@@ -108,6 +111,27 @@ public class FileProcessorTest {
         Assert.assertEquals(expectedCapability, requiredCapabilities.iterator().next());
     }
 
+    @Test
+    public void testRequiresParsedOnce() {
+        Path requiresFile = Paths.get("src", "test", "resources", "requires", "valid");
+        processor.processRequiresFile(requiresFile, requiredCapabilities);
+        Set<RequiredResourceTypeCapability> siblingCapabilities = new HashSet<>();
+        processor.processRequiresFile(requiresFile, siblingCapabilities);
+        Assert.assertEquals(requiredCapabilities, siblingCapabilities);
+        Assert.assertSame(
+                requiredCapabilities.iterator().next(),
+                siblingCapabilities.iterator().next());
+
+        Path invalidFile = Paths.get("src", "test", "resources", "requires", "multiple-clauses");
+        IllegalArgumentException failure = Assert.assertThrows(
+                IllegalArgumentException.class, () -> processor.processRequiresFile(invalidFile, requiredCapabilities));
+        Assert.assertSame(
+                failure,
+                Assert.assertThrows(
+                        IllegalArgumentException.class,
+                        () -> processor.processRequiresFile(invalidFile, requiredCapabilities)));
+    }
+
     @Test
     public void testRequiresMultipleClauses() {
         Path requiresFile = Paths.get("src", "test", "resources", "requires", "multiple-clauses");
@@ -177,6 +201,48 @@ public class FileProcessorTest {
                 providedCapabilities);
     }
 
+    @Test
+    public void testSearchPathResourceTypesShared() {
+        FileProcessor nestedSearchPathsProcessor = new FileProcessor(
+                new Slf4jLogger(),
+                new HashSet<>(Arrays.asList("/apps", "/apps/my/", "libs")),
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
+        Path resourceTypeFolder = Paths.get("apps", "my", "resource");
+        nestedSearchPathsProcessor.processScriptFile(
+                resourceTypeFolder,
+                Paths.get("apps", "my", "resource", "resource.html"),
+                MY_RESOURCE_TYPE,
+                providedCapabilities,
+                false);
+        nestedSearchPathsProcessor.processScriptFile(
+                resourceTypeFolder,
+                Paths.get("apps", "my", "resource", "GET.html"),
+                MY_RESOURCE_TYPE,
+                providedCapabilities,
+                false);
+        Assert.assertEquals(2, providedCapabilities.size());
+        Iterator<ProvidedResourceTypeCapability> capabilities = providedCapabilities.iterator();
+        Set<String> resourceTypes = capabilities.next().getResourceTypes();
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList("/apps/my/resource", "my/resource", "resource")), resourceTypes);
+        Assert.assertSame(resourceTypes, capabilities.next().getResourceTypes());
+        Assert.assertSame(
+                nestedSearchPathsProcessor.processSearchPathResourceTypes(MY_RESOURCE_TYPE),
+                nestedSearchPathsProcessor.processSearchPathResourceTypes(MY_RESOURCE_TYPE));
+
+        ResourceType libsResourceType = ResourceType.parseResourceType("libs/my/resource");
+        nestedSearchPathsProcessor.processScriptFile(
+                Paths.get("libs", "my", "resource"),
+                Paths.get("libs", "my", "resource", "resource.html"),
+                libsResourceType,
+                providedCapabilities,
+                false);
+        Assert.assertEquals(3, providedCapabilities.size());
+        Assert.assertTrue(providedCapabilities.stream()
+                .anyMatch(
+                        capability -> capability.getResourceTypes().equals(Collections.singleton("libs/my/resource"))));
+    }
+
     @Test
     public void testScriptUnknownExtension() {
         Path resourceTypeFolder = Paths.get("scripts", "apps", "my", "resource", "2.0");
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileTreeSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameAnswersAsFileSystemTree() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("a/b/1.0.0/selector"));
+        Files.createDirectories(root.resolve("a/empty"));
+        Files.createDirectories(root.resolve("c"));
+        Files.createFile(root.resolve("a/b/b.html"));
+        Files.createFile(root.resolve("a/b/extends"));
+        Files.createFile(root.resolve("a/b/1.0.0/b.html"));
+        Files.createFile(root.resolve("a/b/1.0.0/selector/GET.html"));
+        Files.createFile(root.resolve("c/c.jsp"));
+
+        FileSystemTree fileSystemTree = new FileSystemTree(root);
+        FileTreeSnapshot snapshot = FileTreeSnapshot.of(root);
+        Assert.assertEquals(root, snapshot.getRoot());
+        List<Path> paths;
+        try (Stream<Path> walk = fileSystemTree.walk(root)) {
+            paths = walk.collect(Collectors.toList());
+        }
+        Assert.assertEquals(paths, snapshot.walk(root).collect(Collectors.toList()));
+        for (Path path : paths) {
+            Assert.assertEquals(path.toString(), fileSystemTree.isDirectory(path), snapshot.isDirectory(path));
+            Assert.assertEquals(path.toString(), fileSystemTree.isRegularFile(path), snapshot.isRegularFile(path));
+            Assert.assertEquals(path, snapshot.getSource(path));
+            try (Stream<Path> walk = fileSystemTree.walk(path)) {
+                Assert.assertEquals(
+                        path.toString(),
+                        walk.collect(Collectors.toList()),
+                        snapshot.walk(path).collect(Collectors.toList()));
+            }
+            if (fileSystemTree.isDirectory(path)) {
+                Assert.assertEquals(path.toString(), fileSystemTree.getChildren(path), snapshot.getChildren(path));
+            }
+        }
+
+        Path missing = root.resolve("missing");
+        Assert.assertFalse(snapshot.isDirectory(missing));
+        Assert.assertFalse(snapshot.isRegularFile(missing));
+        Assert.assertEquals(Collections.emptyList(), snapshot.getChildren(missing));
+        Assert.assertEquals(0, snapshot.walk(missing).count());
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("a/b/1.0.0"));
+        Files.createDirectories(root.resolve("c/d"));
+        Files.createFile(root.resolve("a/b/b.html"));
+        Files.createFile(root.resolve("a/b/1.0.0/b.html"));
+        Files.createFile(root.resolve("c/d/d.html"));
+        FileTreeSnapshot snapshot = FileTreeSnapshot.of(root);
+
+        Files.delete(root.resolve("c/d/d.html"));
+        Files.delete(root.resolve("c/d"));
+        Files.delete(root.resolve("c"));
+        Files.createDirectories(root.resolve("a/e"));
+        Files.createFile(root.resolve("a/e/e.html"));
+        Files.createFile(root.resolve("a/b/1.0.0/GET.html"));
+        // a change which is not reported is not seen by the updated snapshot
+        Files.createFile(root.resolve("a/b/unreported.html"));
+        FileTreeSnapshot updated = snapshot.update(Arrays.asList(
+                root.resolve("c/d/d.html"), root.resolve("a/e/e.html"), root.resolve("a/b/1.0.0/GET.html")));
+
+        Assert.assertEquals(
+                paths(
+                        root,
+                        "",
+                        "a",
+                        "a/b",
+                        "a/b/b.html",
+                        "a/b/1.0.0",
+                        "a/b/1.0.0/b.html",
+                        "a/b/1.0.0/GET.html",
+                        "a/e",
+                        "a/e/e.html"),
+                updated.walk(root).collect(Collectors.toSet()));
+        Assert.assertEquals(
+                paths(root, "a/b/1.0.0", "a/b/1.0.0/b.html", "a/b/1.0.0/GET.html"),
+                updated.walk(root.resolve("a/b/1.0.0")).collect(Collectors.toSet()));
+        Assert.assertEquals(paths(root, "a/b", "a/e"), new HashSet<>(updated.getChildren(root.resolve("a"))));
+        Assert.assertEquals(paths(root, "a"), new HashSet<>(updated.getChildren(root)));
+        Assert.assertTrue(updated.isDirectory(root.resolve("a/e")));
+        Assert.assertTrue(updated.isRegularFile(root.resolve("a/e/e.html")));
+        Assert.assertFalse(updated.isDirectory(root.resolve("c")));
+        Assert.assertFalse(updated.isRegularFile(root.resolve("a/b/unreported.html")));
+        // the original snapshot is not modified
+        Assert.assertTrue(snapshot.isRegularFile(root.resolve("c/d/d.html")));
+    }
+
+    private static Set<Path> paths(Path root, String... relativePaths) {
+        return Arrays.stream(relativePaths).map(root::resolve).collect(Collectors.toSet());
+    }
+}
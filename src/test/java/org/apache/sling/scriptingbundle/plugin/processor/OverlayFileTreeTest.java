@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OverlayFileTreeTest {
+
+    private static final Path ROOT = Paths.get("work");
+    private static final Path FIRST = Paths.get("first");
+    private static final Path SECOND = Paths.get("second");
+
+    @Test
+    public void testFirstSourceWins() {
+        OverlayFileTree.Builder builder = OverlayFileTree.builder(ROOT);
+        Assert.assertTrue(builder.add(Paths.get("a/a.html"), FIRST.resolve("a/a.html")));
+        Assert.assertFalse(builder.add(Paths.get("a/a.html"), SECOND.resolve("a/a.html")));
+        Assert.assertTrue(builder.add(Paths.get("a/b.html"), SECOND.resolve("a/b.html")));
+        OverlayFileTree tree = builder.build();
+
+        Assert.assertEquals(FIRST.resolve("a/a.html"), tree.getSource(ROOT.resolve("a/a.html")));
+        Assert.assertEquals(SECOND.resolve("a/b.html"), tree.getSource(ROOT.resolve("a/b.html")));
+        Assert.assertEquals(
+                Arrays.asList(ROOT.resolve("a/a.html"), ROOT.resolve("a/b.html")), tree.getChildren(ROOT.resolve("a")));
+    }
+
+    @Test
+    public void testFilesAndDirectoriesDoNotOverlap() {
+        OverlayFileTree.Builder builder = OverlayFileTree.builder(ROOT);
+        Assert.assertTrue(builder.add(Paths.get("a/b/c.html"), FIRST.resolve("a/b/c.html")));
+        Assert.assertFalse(builder.add(Paths.get("a/b"), SECOND.resolve("a/b")));
+        Assert.assertFalse(builder.add(Paths.get("a/b/c.html/d.html"), SECOND.resolve("a/b/c.html/d.html")));
+        OverlayFileTree tree = builder.build();
+
+        Assert.assertTrue(tree.isDirectory(ROOT));
+        Assert.assertTrue(tree.isDirectory(ROOT.resolve("a/b")));
+        Assert.assertFalse(tree.isRegularFile(ROOT.resolve("a/b")));
+        Assert.assertTrue(tree.isRegularFile(ROOT.resolve("a/b/c.html")));
+        Assert.assertFalse(tree.isDirectory(ROOT.resolve("a/b/c.html")));
+    }
+
+    @Test
+    public void testWalk() {
+        OverlayFileTree.Builder builder = OverlayFileTree.builder(ROOT);
+        builder.add(Paths.get("a/b/c.html"), FIRST.resolve("a/b/c.html"));
+        builder.add(Paths.get("a/d.html"), SECOND.resolve("a/d.html"));
+        builder.add(Paths.get("e.html"), SECOND.resolve("e.html"));
+        OverlayFileTree tree = builder.build();
+
+        Assert.assertEquals(
+                Arrays.asList(
+                        ROOT.resolve("a"), ROOT.resolve("a/b"), ROOT.resolve("a/b/c.html"), ROOT.resolve("a/d.html")),
+                tree.walk(ROOT.resolve("a")).collect(Collectors.toList()));
+        Assert.assertEquals(0, tree.walk(ROOT.resolve("missing")).count());
+    }
+}
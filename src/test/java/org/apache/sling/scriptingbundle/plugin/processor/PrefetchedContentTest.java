@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class PrefetchedContentTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDisabled() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        FileSystemTree fileTree = new FileSystemTree(root);
+        PrefetchedContent content = PrefetchedContent.prefetch(
+                fileTree, Collections.singletonList(root), new VaultContentXmlCache(), new Slf4jLogger(), 0);
+        Assert.assertSame(PrefetchedContent.none(), content);
+        Assert.assertSame(fileTree, content.wrap(fileTree));
+        Path requires = Files.write(root.resolve("requires"), "a/b".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(Collections.singletonList("a/b"), content.readAllLines(requires));
+    }
+
+    @Test
+    public void testUnsupportedRuntime() throws IOException {
+        Assume.assumeFalse(PrefetchedContent.isSupported());
+        Path root = temporaryFolder.getRoot().toPath();
+        Path requires = Files.write(root.resolve("requires"), "a/b".getBytes(StandardCharsets.UTF_8));
+        FileSystemTree fileTree = new FileSystemTree(root);
+        Logger logger = Mockito.mock(Logger.class);
+
+        PrefetchedContent content = PrefetchedContent.prefetch(
+                fileTree, Arrays.asList(root, requires), new VaultContentXmlCache(), logger, 2);
+        Assert.assertSame(PrefetchedContent.none(), content);
+        Assert.assertSame(fileTree, content.wrap(fileTree));
+        Assert.assertEquals(Collections.singletonList("a/b"), content.readAllLines(requires));
+        Mockito.verify(logger).info(ArgumentMatchers.contains("read synchronously"));
+    }
+
+    @Test
+    public void testPrefetch() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path folder = Files.createDirectories(root.resolve("a/b"));
+        Path requires = Files.write(folder.resolve("requires"), "c/d\ne/f".getBytes(StandardCharsets.UTF_8));
+        Path script = Files.write(folder.resolve("b.html"), new byte[0]);
+        FileSystemTree fileTree = new FileSystemTree(root);
+
+        PrefetchedContent content = PrefetchedContent.prefetch(
+                fileTree, Arrays.asList(requires, script, folder), new VaultContentXmlCache(), new Slf4jLogger(), 2);
+        Assume.assumeTrue(PrefetchedContent.isSupported());
+        FileTree prefetchedTree = content.wrap(fileTree);
+        Files.delete(requires);
+        Files.delete(script);
+
+        List<Path> children = prefetchedTree.getChildren(folder);
+        Assert.assertEquals(2, children.size());
+        Assert.assertTrue(children.containsAll(Arrays.asList(requires, script)));
+        Assert.assertTrue(prefetchedTree.isDirectory(folder));
+        Assert.assertTrue(prefetchedTree.isRegularFile(script));
+        Assert.assertFalse(prefetchedTree.isDirectory(script));
+        Assert.assertEquals(Arrays.asList("c/d", "e/f"), content.readAllLines(requires));
+    }
+
+    @Test
+    public void testPrefetchSnapshot() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path folder = Files.createDirectories(root.resolve("a/b"));
+        Path requires = Files.write(folder.resolve("requires"), "c/d\ne/f".getBytes(StandardCharsets.UTF_8));
+        Path script = Files.write(folder.resolve("b.html"), new byte[0]);
+        FileTreeSnapshot snapshot = FileTreeSnapshot.of(root);
+
+        PrefetchedContent content = PrefetchedContent.prefetch(
+                snapshot, Arrays.asList(requires, script, folder), new VaultContentXmlCache(), new Slf4jLogger(), 2);
+        Assume.assumeTrue(PrefetchedContent.isSupported());
+        // the snapshot already answers the folder queries from memory, so only the files' content is read ahead
+        Assert.assertSame(snapshot, content.wrap(snapshot));
+        Files.delete(requires);
+        Assert.assertEquals(Arrays.asList("c/d", "e/f"), content.readAllLines(requires));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceTypeFolderAnalyserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSelectorFoldersStopAtNestedResourceTypes() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path resourceType = Files.createDirectories(root.resolve("org/example"));
+        Files.createFile(resourceType.resolve("example.html"));
+        Path selectors = Files.createDirectories(resourceType.resolve("a/b/c"));
+        Files.createFile(selectors.resolve("d.html"));
+        Path nested = Files.createDirectories(resourceType.resolve("a/nested"));
+        Files.createFile(nested.resolve("nested.html"));
+        Files.createFile(Files.createDirectories(nested.resolve("selector")).resolve("GET.html"));
+
+        FileTree fileTree = FileTreeSnapshot.of(root);
+        VaultContentXmlCache vaultContentXmlCache = new VaultContentXmlCache();
+        ResourceTypeFolderPredicate predicate = new ResourceTypeFolderPredicate(
+                new Slf4jLogger(),
+                fileTree,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                vaultContentXmlCache,
+                false);
+        FileProcessor fileProcessor = new FileProcessor(
+                new Slf4jLogger(),
+                Constants.DEFAULT_SEARCH_PATHS,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                vaultContentXmlCache);
+        ResourceTypeFolderAnalyser analyser =
+                new ResourceTypeFolderAnalyser(new Slf4jLogger(), fileTree, predicate, fileProcessor, false);
+
+        Capabilities capabilities = analyser.getCapabilities(resourceType);
+        Set<ProvidedResourceTypeCapability> expected = new HashSet<>(Arrays.asList(
+                ProvidedResourceTypeCapability.builder()
+                        .withResourceType("org/example")
+                        .withScriptEngine("htl")
+                        .withScriptExtension("html")
+                        .build(),
+                ProvidedResourceTypeCapability.builder()
+                        .withResourceType("org/example")
+                        .withSelectors("a", "b", "c", "d")
+                        .withScriptEngine("htl")
+                        .withScriptExtension("html")
+                        .build()));
+        Assert.assertEquals(expected, new HashSet<>(capabilities.getProvidedResourceTypeCapabilities()));
+        Assert.assertEquals(Collections.emptySet(), capabilities.getRequiredResourceTypeCapabilities());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.scriptingbundle.plugin.processor.filevault.VaultContentXmlCache;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceTypeFolderPredicateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testVerdictsAreComputedOnce() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path resourceType = Files.createDirectories(root.resolve("org/example"));
+        Files.createFile(resourceType.resolve("example.html"));
+        Path selector = Files.createDirectories(resourceType.resolve("selector"));
+        Files.createFile(selector.resolve("notes.txt"));
+        AtomicInteger listings = new AtomicInteger();
+        FileTree fileTree = new FileSystemTree(root) {
+            @Override
+            public @NotNull List<Path> getChildren(@NotNull Path directory) throws IOException {
+                listings.incrementAndGet();
+                return super.getChildren(directory);
+            }
+        };
+        ResourceTypeFolderPredicate predicate = new ResourceTypeFolderPredicate(
+                new Slf4jLogger(),
+                fileTree,
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                new VaultContentXmlCache(),
+                false);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(predicate.test(resourceType));
+            Assert.assertFalse(predicate.test(selector));
+        }
+        Assert.assertEquals(2, listings.get());
+    }
+
+    @Test
+    public void testUnmappedScriptExtensions() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path image = Files.createDirectories(root.resolve("org/image"));
+        Files.createFile(image.resolve("image.png"));
+        Path json = Files.createDirectories(root.resolve("org/json"));
+        Files.createFile(json.resolve("html.json"));
+        // outside of content packages any file named after the folder makes it a resource type folder
+        ResourceTypeFolderPredicate predicate = new ResourceTypeFolderPredicate(
+                new Slf4jLogger(),
+                new FileSystemTree(root),
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                new VaultContentXmlCache(),
+                false);
+        Assert.assertTrue(predicate.test(image));
+        Assert.assertTrue(predicate.test(json));
+        // content packages are analysed without these files, so they are ignored
+        ResourceTypeFolderPredicate contentPackagePredicate = new ResourceTypeFolderPredicate(
+                new Slf4jLogger(),
+                new FileSystemTree(root),
+                Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING,
+                new VaultContentXmlCache(),
+                true);
+        Assert.assertFalse(contentPackagePredicate.test(image));
+        Assert.assertFalse(contentPackagePredicate.test(json));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor;
+
+import org.apache.sling.api.resource.type.ResourceType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+public class ResourceTypeNamesTest {
+
+    private static final String[] SEGMENTS = {
+        "1",
+        "1.0",
+        "1.0.0",
+        "1.0.0.qualifier",
+        "1.0.0.q_-1",
+        "1.0.0.a.b",
+        "1.0.0.a b",
+        "1.0.0.",
+        "1.",
+        "1..0",
+        ".1",
+        "01.002.0003",
+        "+1",
+        "-1",
+        "-0",
+        "1.-0.+0",
+        "2147483647",
+        "2147483648",
+        "-2147483648",
+        "00000000000000000001",
+        " 1.0 ",
+        " ",
+        "a",
+        "1a",
+        "1.0.a",
+        "button",
+        "my.button",
+        "١.٢"
+    };
+
+    @Test
+    public void testIsVersionParity() {
+        for (String segment : SEGMENTS) {
+            boolean expected;
+            try {
+                Version.parseVersion(segment);
+                expected = true;
+            } catch (IllegalArgumentException e) {
+                expected = false;
+            }
+            Assert.assertEquals(segment, expected, ResourceTypeNames.isVersion(segment));
+        }
+    }
+
+    @Test
+    public void testMemoisedTranslations() {
+        ResourceTypeNames resourceTypeNames = new ResourceTypeNames();
+        Assert.assertEquals("jcr:content", resourceTypeNames.getRepositoryName("_jcr_content"));
+        Assert.assertEquals("a/jcr:content", resourceTypeNames.getRepositoryPath("a/_jcr_content"));
+        ResourceType resourceType = resourceTypeNames.parseResourceType("org/example/1.0.0");
+        Assert.assertEquals(ResourceType.parseResourceType("org/example/1.0.0"), resourceType);
+        Assert.assertSame(resourceType, resourceTypeNames.parseResourceType("org/example/1.0.0"));
+    }
+}
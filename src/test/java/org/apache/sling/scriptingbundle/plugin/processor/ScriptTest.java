@@ -88,4 +88,39 @@ public class ScriptTest {
         Assert.assertNull(Script.parseScript("extends"));
         Assert.assertNull(Script.parseScript("test.1.txt.PUT.html"));
     }
+
+    @Test
+    public void testEmptyAndTrailingParts() {
+        Assert.assertNull(Script.parseScript(""));
+        Assert.assertNull(Script.parseScript("..."));
+        Assert.assertNull(Script.parseScript("html."));
+
+        Script script = Script.parseScript("test.html..");
+        Assert.assertNotNull(script);
+        Assert.assertEquals("test", script.getName());
+        Assert.assertEquals("html", script.getScriptExtension());
+
+        script = Script.parseScript("test..html");
+        Assert.assertNotNull(script);
+        Assert.assertEquals("test", script.getName());
+        Assert.assertEquals("", script.getRequestExtension());
+        Assert.assertEquals("html", script.getScriptExtension());
+
+        script = Script.parseScript(".html");
+        Assert.assertNotNull(script);
+        Assert.assertEquals("", script.getName());
+        Assert.assertEquals("html", script.getScriptExtension());
+    }
+
+    @Test
+    public void testScriptsWithoutEngineMappingAreRejected() {
+        Assert.assertNull(Script.parseScript("logo.png", Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING));
+        Assert.assertNull(Script.parseScript("a.b.c.d.e.png", Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING));
+        Script script = Script.parseScript("test.json.GET.jsp", Constants.DEFAULT_EXTENSION_TO_SCRIPT_ENGINE_MAPPING);
+        Assert.assertNotNull(script);
+        Assert.assertEquals("test", script.getName());
+        Assert.assertEquals("json", script.getRequestExtension());
+        Assert.assertEquals("GET", script.getRequestMethod());
+        Assert.assertEquals("jsp", script.getScriptExtension());
+    }
 }
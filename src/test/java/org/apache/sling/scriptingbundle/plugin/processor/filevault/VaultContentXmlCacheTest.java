@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.processor.filevault;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class VaultContentXmlCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadersAreReusedUntilTheFileChanges() throws IOException {
+        Path contentXml = temporaryFolder.newFile(".content.xml").toPath();
+        write(contentXml, "generic/image", 1000);
+        VaultContentXmlCache cache = new VaultContentXmlCache();
+        VaultContentXmlReader reader = cache.get(contentXml);
+        assertSame(reader, cache.get(contentXml));
+
+        write(contentXml, "generic/picture", 2000);
+        VaultContentXmlReader changedReader = cache.get(contentXml);
+        assertEquals(
+                "generic/picture", changedReader.getSlingResourceSuperType().orElse(null));
+        assertSame(changedReader, cache.get(contentXml));
+    }
+
+    @Test
+    public void testFailuresAreCached() throws IOException {
+        Path contentXml = temporaryFolder.newFile(".content.xml").toPath();
+        Files.write(contentXml, "<root/>".getBytes(StandardCharsets.UTF_8));
+        VaultContentXmlCache cache = new VaultContentXmlCache();
+        IllegalArgumentException first = assertThrows(IllegalArgumentException.class, () -> cache.get(contentXml));
+        IllegalArgumentException second = assertThrows(IllegalArgumentException.class, () -> cache.get(contentXml));
+        assertSame(first, second);
+    }
+
+    private static void write(Path contentXml, String resourceSuperType, long lastModified) throws IOException {
+        Files.write(
+                contentXml,
+                ("<jcr:root xmlns:sling=\"http://sling.apache.org/jcr/sling/1.0\" "
+                                + "xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+                                + "sling:resourceSuperType=\"" + resourceSuperType + "\"/>")
+                        .getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(contentXml, FileTime.fromMillis(lastModified));
+    }
+}
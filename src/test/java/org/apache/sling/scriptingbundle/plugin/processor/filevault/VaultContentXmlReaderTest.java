@@ -19,11 +19,16 @@
 package org.apache.sling.scriptingbundle.plugin.processor.filevault;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Optional;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
@@ -31,6 +36,9 @@ import static org.junit.Assert.assertTrue;
 
 public class VaultContentXmlReaderTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testReader() throws IOException {
         VaultContentXmlReader vaultContentXmlReader = new VaultContentXmlReader(Paths.get(
@@ -75,4 +83,52 @@ public class VaultContentXmlReaderTest {
                         .contains(
                                 "does not seem to provide a Docview format - https://jackrabbit.apache.org/filevault/docview.html"));
     }
+
+    @Test
+    public void testOnlyRootElementRead() throws IOException {
+        Path contentXml = temporaryFolder.newFile(".content.xml").toPath();
+        Files.write(
+                contentXml,
+                ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                + "<jcr:root xmlns:sling=\"http://sling.apache.org/jcr/sling/1.0\" "
+                                + "xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+                                + "sling:resourceSuperType=\"generic/image\">\n"
+                                + "<child><unclosed>")
+                        .getBytes(StandardCharsets.UTF_8));
+        VaultContentXmlReader vaultContentXmlReader = new VaultContentXmlReader(contentXml);
+        assertEquals(Optional.of("generic/image"), vaultContentXmlReader.getSlingResourceSuperType());
+        assertTrue(vaultContentXmlReader.getSlingRequiredResourceTypes().isEmpty());
+    }
+
+    @Test
+    public void testInternalEntitiesNotExpanded() throws IOException {
+        Path contentXml = temporaryFolder.newFile(".content.xml").toPath();
+        Files.write(
+                contentXml,
+                ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                + "<!DOCTYPE jcr:root [\n"
+                                + "<!ENTITY lol \"lol\">\n"
+                                + "<!ENTITY lol1 \"&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;\">\n"
+                                + "<!ENTITY lol2 \"&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;&lol1;\">\n"
+                                + "]>\n"
+                                + "<jcr:root xmlns:sling=\"http://sling.apache.org/jcr/sling/1.0\" "
+                                + "xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+                                + "sling:resourceSuperType=\"&lol2;\"/>")
+                        .getBytes(StandardCharsets.UTF_8));
+        assertEquals(Optional.empty(), new VaultContentXmlReader(contentXml).getSlingResourceSuperType());
+    }
+
+    @Test
+    public void testDoctypeWithoutEntities() throws IOException {
+        Path contentXml = temporaryFolder.newFile(".content.xml").toPath();
+        Files.write(
+                contentXml,
+                ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                + "<!DOCTYPE jcr:root>\n"
+                                + "<jcr:root xmlns:sling=\"http://sling.apache.org/jcr/sling/1.0\" "
+                                + "xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" "
+                                + "sling:resourceSuperType=\"generic/image\"/>")
+                        .getBytes(StandardCharsets.UTF_8));
+        assertEquals(Optional.of("generic/image"), new VaultContentXmlReader(contentXml).getSlingResourceSuperType());
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.scriptingbundle.plugin.capability.Capabilities;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.capability.ProvidedScriptCapability;
+import org.apache.sling.scriptingbundle.plugin.capability.RequiredResourceTypeCapability;
+import org.apache.sling.scriptingbundle.plugin.processor.Slf4jLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+public class AnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path cacheFile;
+    private AnalysisCache cache;
+
+    @Before
+    public void setUp() {
+        cacheFile = temporaryFolder.getRoot().toPath().resolve("work.capabilities");
+        cache = new AnalysisCache(cacheFile, new Slf4jLogger());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Set<ProvidedResourceTypeCapability> provided = new LinkedHashSet<>();
+        provided.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("my/type", "/apps/my/type")
+                .withVersion(new Version("1.2.3"))
+                .withSelectors("a", "b")
+                .withRequestMethod("GET")
+                .withRequestExtension("json")
+                .withScriptEngine("htl")
+                .withScriptExtension("html")
+                .build());
+        provided.add(ProvidedResourceTypeCapability.builder()
+                .withResourceTypes("/apps/my/type", "my/type")
+                .withExtendsResourceType("my/base")
+                .build());
+        Set<ProvidedScriptCapability> scripts = new LinkedHashSet<>();
+        scripts.add(ProvidedScriptCapability.builder(Collections.singletonMap("html", "htl"))
+                .withPath("/apps/my/script.html")
+                .build());
+        Set<RequiredResourceTypeCapability> required = new LinkedHashSet<>();
+        required.add(RequiredResourceTypeCapability.builder()
+                .withResourceType("my/base")
+                .withVersionRange(new VersionRange("[1.0.0,2.0.0)"))
+                .build());
+        required.add(RequiredResourceTypeCapability.builder()
+                .withResourceType("my/other")
+                .withIsOptional()
+                .build());
+        Capabilities capabilities = new Capabilities(provided, scripts, required);
+
+        cache.write("fingerprint", capabilities);
+        Capabilities cached = cache.read("fingerprint");
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(
+                Arrays.asList(provided.toArray()),
+                Arrays.asList(cached.getProvidedResourceTypeCapabilities().toArray()));
+        Assert.assertEquals(scripts, cached.getProvidedScriptCapabilities());
+        Assert.assertEquals(
+                Arrays.asList(required.toArray()),
+                Arrays.asList(cached.getRequiredResourceTypeCapabilities().toArray()));
+        Assert.assertEquals(capabilities.getProvidedCapabilitiesString(), cached.getProvidedCapabilitiesString());
+        Assert.assertEquals(capabilities.getRequiredCapabilitiesString(), cached.getRequiredCapabilitiesString());
+
+        Assert.assertNull(cache.read("other"));
+    }
+
+    @Test
+    public void testInvalidCache() throws IOException {
+        Assert.assertNull(cache.read("fingerprint"));
+        Files.write(cacheFile, "invalid".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(cache.read("fingerprint"));
+    }
+
+    @Test
+    public void testOtherPluginVersion() throws IOException {
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(cacheFile))) {
+            output.writeUTF("scriptingbundle-maven-plugin analysis cache v1 0.0.1");
+            output.writeUTF("fingerprint");
+        }
+        Assert.assertNull(cache.read("fingerprint"));
+    }
+
+    @Test
+    public void testFingerprint() throws IOException {
+        Path sources = temporaryFolder.newFolder("sources").toPath();
+        Path script = sources.resolve("script.html");
+        Files.write(script, "content".getBytes(StandardCharsets.UTF_8));
+        Path large = sources.resolve("large.html");
+        byte[] largeContent = new byte[100_000];
+        Arrays.fill(largeContent, (byte) 'a');
+        Files.write(large, largeContent);
+        Map<Path, Path> files = new LinkedHashMap<>();
+        files.put(Paths.get("apps", "script.html"), script);
+        files.put(Paths.get("apps", "large.html"), large);
+
+        String fingerprint = fingerprint(files, "value");
+        Assert.assertEquals(32, fingerprint.length());
+        Assert.assertEquals(fingerprint, fingerprint(files, "value"));
+        Assert.assertNotEquals(fingerprint, fingerprint(files, "other"));
+
+        Files.write(script, "Content".getBytes(StandardCharsets.UTF_8));
+        String changedScript = fingerprint(files, "value");
+        Assert.assertNotEquals(fingerprint, changedScript);
+
+        largeContent[50_000] = 'b';
+        Files.write(large, largeContent);
+        Assert.assertNotEquals(changedScript, fingerprint(files, "value"));
+
+        Map<Path, Path> renamed = new LinkedHashMap<>();
+        renamed.put(Paths.get("libs", "script.html"), script);
+        renamed.put(Paths.get("apps", "large.html"), large);
+        Assert.assertNotEquals(fingerprint(files, "value"), fingerprint(renamed, "value"));
+    }
+
+    private static String fingerprint(Map<Path, Path> files, String property) throws IOException {
+        return new InputFingerprint()
+                .addProperty("property", property)
+                .addFiles(files)
+                .toString();
+    }
+}
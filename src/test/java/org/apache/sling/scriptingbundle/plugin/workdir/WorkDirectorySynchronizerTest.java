@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scriptingbundle.plugin.workdir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.scriptingbundle.plugin.processor.Slf4jLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkDirectorySynchronizerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path sources;
+    private Path workDirectory;
+    private WorkDirectorySynchronizer synchronizer;
+
+    @Before
+    public void setUp() throws IOException {
+        sources = temporaryFolder.newFolder("sources").toPath();
+        workDirectory = temporaryFolder.getRoot().toPath().resolve("work");
+        synchronizer = new WorkDirectorySynchronizer(workDirectory, new Slf4jLogger());
+    }
+
+    @Test
+    public void testInitialSynchronisation() throws IOException {
+        Map<Path, Path> files = files(write("a/a.html", "a"), write("a/b/b.html", "b"));
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files);
+        Assert.assertEquals(2, result.getCopied());
+        Assert.assertEquals(0, result.getUnchanged());
+        Assert.assertEquals("a", read("a/a.html"));
+        Assert.assertEquals("b", read("a/b/b.html"));
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotCopiedAgain() throws IOException {
+        Map<Path, Path> files = files(write("a/a.html", "a"), write("a/b/b.html", "b"));
+        synchronizer.synchronize(files);
+        FileTime lastModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(workDirectory.resolve("a/a.html"), lastModified);
+
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files);
+        Assert.assertEquals(0, result.getCopied());
+        Assert.assertEquals(2, result.getUnchanged());
+        Assert.assertEquals(lastModified, Files.getLastModifiedTime(workDirectory.resolve("a/a.html")));
+    }
+
+    @Test
+    public void testTouchedFileWithSameContentIsNotCopied() throws IOException {
+        Path source = write("a/a.html", "a");
+        Map<Path, Path> files = files(source);
+        synchronizer.synchronize(files);
+        Files.setLastModifiedTime(
+                source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 10_000));
+
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files);
+        Assert.assertEquals(0, result.getCopied());
+        Assert.assertEquals(1, result.getUnchanged());
+    }
+
+    @Test
+    public void testChangedFileIsCopied() throws IOException {
+        Path source = write("a/a.html", "a");
+        Map<Path, Path> files = files(source);
+        synchronizer.synchronize(files);
+        write("a/a.html", "changed");
+
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files);
+        Assert.assertEquals(1, result.getCopied());
+        Assert.assertEquals("changed", read("a/a.html"));
+    }
+
+    @Test
+    public void testEditedCopyWithSameSizeIsCopied() throws IOException {
+        Path source = write("a/a.html", "a");
+        Map<Path, Path> files = files(source);
+        synchronizer.synchronize(files);
+        Path copy = workDirectory.resolve("a/a.html");
+        FileTime lastModified = Files.getLastModifiedTime(copy);
+        Files.write(copy, "b".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(copy, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files);
+        Assert.assertEquals(1, result.getCopied());
+        Assert.assertEquals("a", read("a/a.html"));
+    }
+
+    @Test
+    public void testStaleFilesAreRemoved() throws IOException {
+        Path a = write("a/a.html", "a");
+        Path b = write("b/b.html", "b");
+        synchronizer.synchronize(files(a, b));
+        Files.createDirectories(workDirectory.resolve("c"));
+        Files.write(workDirectory.resolve("c/unknown.html"), "c".getBytes(StandardCharsets.UTF_8));
+
+        WorkDirectorySynchronizer.Result result = synchronizer.synchronize(files(a));
+        Assert.assertEquals(2, result.getRemoved());
+        Assert.assertTrue(Files.exists(workDirectory.resolve("a/a.html")));
+        Assert.assertFalse(Files.exists(workDirectory.resolve("b")));
+        Assert.assertFalse(Files.exists(workDirectory.resolve("c")));
+    }
+
+    @Test
+    public void testUpdateOnlyTouchesChangedFiles() throws IOException {
+        Path a = write("a/a.html", "a");
+        Path b = write("b/b.html", "b");
+        synchronizer.synchronize(files(a, b));
+        write("a/a.html", "changed");
+        Files.write(workDirectory.resolve("unknown.html"), "unknown".getBytes(StandardCharsets.UTF_8));
+        Path c = write("c/c.html", "c");
+
+        WorkDirectorySynchronizer.Result result =
+                synchronizer.update(files(c), Collections.singleton(Paths.get("b", "b.html")));
+        Assert.assertEquals(1, result.getCopied());
+        Assert.assertEquals(1, result.getRemoved());
+        Assert.assertEquals("c", read("c/c.html"));
+        Assert.assertFalse(Files.exists(workDirectory.resolve("b")));
+        // the files which were not reported as changed are left untouched
+        Assert.assertEquals("a", read("a/a.html"));
+        Assert.assertTrue(Files.exists(workDirectory.resolve("unknown.html")));
+
+        result = synchronizer.synchronize(files(a, c));
+        Assert.assertEquals(1, result.getCopied());
+        Assert.assertEquals(1, result.getUnchanged());
+        Assert.assertEquals("changed", read("a/a.html"));
+    }
+
+    @Test
+    public void testParallelSynchronisation() throws IOException {
+        Map<Path, Path> files = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Path file = write(String.format("folder-%d/script-%d.html", i % 5, i), Integer.toString(i));
+            files.put(sources.relativize(file), file);
+        }
+        WorkDirectorySynchronizer parallelSynchronizer =
+                new WorkDirectorySynchronizer(workDirectory, new Slf4jLogger(), 4);
+        WorkDirectorySynchronizer.Result result = parallelSynchronizer.synchronize(files);
+        Assert.assertEquals(50, result.getCopied());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(Integer.toString(i), read(String.format("folder-%d/script-%d.html", i % 5, i)));
+        }
+        result = parallelSynchronizer.synchronize(files);
+        Assert.assertEquals(0, result.getCopied());
+        Assert.assertEquals(50, result.getUnchanged());
+    }
+
+    @Test
+    public void testFailuresAreReported() throws IOException {
+        Map<Path, Path> files = files(write("a/a.html", "a"), write("b/b.html", "b"));
+        synchronizer.synchronize(files);
+        Files.delete(sources.resolve("b/b.html"));
+        files.put(Paths.get("c", "c.html"), sources.resolve("c/c.html"));
+        WorkDirectorySynchronizer.Result result =
+                new WorkDirectorySynchronizer(workDirectory, new Slf4jLogger(), 2).synchronize(files);
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(Paths.get("b", "b.html"), Paths.get("c", "c.html"))),
+                result.getFailures().keySet());
+        Assert.assertEquals(1, result.getUnchanged());
+        Assert.assertEquals("a", read("a/a.html"));
+        // the working copy of a file which cannot be read any more is not left behind
+        Assert.assertFalse(Files.exists(workDirectory.resolve("b/b.html")));
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = sources.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String read(String relativePath) throws IOException {
+        return new String(Files.readAllBytes(workDirectory.resolve(relativePath)), StandardCharsets.UTF_8);
+    }
+
+    private Map<Path, Path> files(Path... files) {
+        Map<Path, Path> map = new LinkedHashMap<>();
+        for (Path file : files) {
+            map.put(sources.relativize(file), file);
+        }
+        return map;
+    }
+}